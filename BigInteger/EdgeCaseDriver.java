@@ -0,0 +1,49 @@
+/**
+ * Regression check for inputs whose result is tiny while the arguments are
+ * huge, which must return at once instead of sizing buffers or loops by the
+ * arguments.
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+public class EdgeCaseDriver {
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+
+    private static void checkPowerOfOne() {
+        check(Num.power(new Num(1), 1L << 40).toString().equals("1"), "1^(2^40)");
+        check(Num.power(new Num(1), 300000000L).toString().equals("1"), "1^300000000");
+        check(Num.power(new Num(-1), 99999999999L).toString().equals("-1"), "(-1)^99999999999");
+        check(Num.power(new Num(-1), 1L << 40).toString().equals("1"), "(-1)^(2^40)");
+        check(ExpressionPlan.compilePostfix(new String[]{"1", "99999999999", "^"}).evaluate()
+                .toString().equals("1"), "postfix 1 99999999999 ^");
+    }
+
+    private static void checkRootOfHighDegree() {
+        Num big = Num.power(new Num(10), 30);
+        check(Num.nthRoot(big, 1000).toString().equals("1"), "nthRoot(10^30, 1000)");
+        check(Num.nthRoot(big, 5000).toString().equals("1"), "nthRoot(10^30, 5000)");
+        check(Num.nthRoot(new Num(10), 1000000000).toString().equals("1"), "nthRoot(10, 10^9)");
+        check(Num.nthRoot(big, 99).toString().equals("2"), "nthRoot(10^30, 99)");
+        check(Num.nthRoot(new Num("-" + big), 101).toString().equals("-1"), "nthRoot(-10^30, 101)");
+        check(Num.nthRoot(Num.power(new Num(10), 3000), 1000).toString().equals("1000"),
+                "nthRoot(10^3000, 1000)");
+        // In base 2 the estimate needs many leading digits to stay above the root
+        Num binary = Num.power(new Num(10), 37).convertBase(2);
+        check(Num.squareRoot(binary).toString().equals("3162277660168379331"), "squareRoot(10^37) in base 2");
+        check(Num.nthRoot(binary, 3).toString().equals("2154434690031"), "nthRoot(10^37, 3) in base 2");
+    }
+
+    public static void main(String[] args) {
+        long start = System.currentTimeMillis();
+        checkPowerOfOne();
+        checkRootOfHighDegree();
+        System.out.println("Edge cases OK || Time: " + (System.currentTimeMillis() - start) + " msec.");
+    }
+}
@@ -0,0 +1,565 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compiled arithmetic expression over Num. Compiling parses the literals into
+ * Num once and turns the expression into postfix opcodes, so that a plan can
+ * be evaluated any number of times (from any number of threads) without
+ * tokenizing, parsing or printing again.
+ *
+ * Tokens are numbers ([0-9]+), variables ([A-Za-z_][A-Za-z0-9_]*), the
+ * operators "+", "-", "*", "/", "%", "^" and parentheses. There is no unary
+ * minus operator. Variables are bound to values at evaluation time.
+ *
+ * evaluateParallel evaluates independent subexpressions concurrently on the
+ * pool of Num (see Num.setMultiplyPool), over a DAG in which identical
+ * subexpressions are evaluated once.
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+public final class ExpressionPlan {
+
+    static final byte CONSTANT = 0;
+    static final byte VARIABLE = 1;
+    static final byte ADD = 2;
+    static final byte SUBTRACT = 3;
+    static final byte MULTIPLY = 4;
+    static final byte DIVIDE = 5;
+    static final byte MOD = 6;
+    static final byte POWER = 7;
+
+    /**
+     * opcode of every instruction, in postfix order
+     */
+    final byte[] ops;
+
+    /**
+     * index into constants or variables for CONSTANT and VARIABLE
+     * instructions
+     */
+    final int[] args;
+
+    /**
+     * literals of the expression
+     */
+    final Num[] constants;
+
+    /**
+     * names of the variables, in order of first appearance
+     */
+    private final String[] variables;
+
+    /**
+     * largest number of operands on the stack during evaluation
+     */
+    private final int maxDepth;
+
+    /**
+     * Expression DAG, built by the first parallel evaluation
+     */
+    private volatile Dag dag;
+
+    private ExpressionPlan(byte[] ops, int[] args, Num[] constants, String[] variables, int maxDepth) {
+        this.ops = ops;
+        this.args = args;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Compiles an infix expression given as a string, e.g. "(a + 3) * b"
+     *
+     * @param expression expression to compile
+     * @return plan of the expression
+     * @throws IllegalArgumentException bad expression
+     */
+    public static ExpressionPlan compile(String expression) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (isDigit(c)) {
+                while (i < expression.length() && isDigit(expression.charAt(i))) {
+                    i++;
+                }
+            } else if (isLetter(c)) {
+                while (i < expression.length() && (isLetter(expression.charAt(i)) || isDigit(expression.charAt(i)))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            tokens.add(expression.substring(start, i));
+        }
+        return compileInfix(tokens.toArray(new String[tokens.size()]));
+    }
+
+    /**
+     * Compiles an infix expression, one token per string, using the
+     * shunting-yard algorithm
+     *
+     * @param expr expression to compile
+     * @return plan of the expression
+     * @throws IllegalArgumentException bad expression
+     */
+    public static ExpressionPlan compileInfix(String[] expr) {
+        List<String> output = new ArrayList<>();
+        List<String> operators = new ArrayList<>();
+        for (String e : expr) {
+            String token = e.trim();
+            switch (tokenType(token)) {
+                case NUMBER:
+                case VARIABLE:
+                    output.add(token);
+                    break;
+                case OPERATOR:
+                    int p = precedence(token);
+                    while (!operators.isEmpty() && !last(operators).equals("(")) {
+                        int top = precedence(last(operators));
+                        // "^" is the only right associative operator
+                        if (p < top || (p == top && !token.equals("^"))) {
+                            output.add(operators.remove(operators.size() - 1));
+                        } else {
+                            break;
+                        }
+                    }
+                    operators.add(token);
+                    break;
+                case OPEN:
+                    operators.add(token);
+                    break;
+                case CLOSE:
+                    while (!operators.isEmpty() && !last(operators).equals("(")) {
+                        output.add(operators.remove(operators.size() - 1));
+                    }
+                    if (operators.isEmpty()) {
+                        throw new IllegalArgumentException("Bad expression");
+                    }
+                    operators.remove(operators.size() - 1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid token in expression");
+            }
+        }
+        while (!operators.isEmpty()) {
+            String op = operators.remove(operators.size() - 1);
+            if (op.equals("(")) {
+                throw new IllegalArgumentException("Bad expression");
+            }
+            output.add(op);
+        }
+        return compilePostfix(output.toArray(new String[output.size()]));
+    }
+
+    /**
+     * Compiles a postfix expression, one token per string
+     *
+     * @param expr expression to compile
+     * @return plan of the expression
+     * @throws IllegalArgumentException bad expression
+     */
+    public static ExpressionPlan compilePostfix(String[] expr) {
+        byte[] ops = new byte[expr.length];
+        int[] args = new int[expr.length];
+        List<Num> constants = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int depth = 0;
+        int maxDepth = 0;
+        for (int i = 0; i < expr.length; i++) {
+            String token = expr[i].trim();
+            switch (tokenType(token)) {
+                case NUMBER:
+                    ops[i] = CONSTANT;
+                    args[i] = constants.size();
+                    constants.add(new Num(token));
+                    depth++;
+                    break;
+                case VARIABLE:
+                    ops[i] = VARIABLE;
+                    int index = variables.indexOf(token);
+                    if (index < 0) {
+                        index = variables.size();
+                        variables.add(token);
+                    }
+                    args[i] = index;
+                    depth++;
+                    break;
+                case OPERATOR:
+                    if (depth < 2) {
+                        throw new IllegalArgumentException("Bad expression");
+                    }
+                    ops[i] = opcode(token.charAt(0));
+                    depth--;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid token in expression");
+            }
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        if (depth > 1) {
+            throw new IllegalArgumentException("Bad expression");
+        }
+        return new ExpressionPlan(ops, args, constants.toArray(new Num[constants.size()]),
+                variables.toArray(new String[variables.size()]), maxDepth);
+    }
+
+    /**
+     * @return names of the variables, in the order expected by evaluate
+     */
+    public List<String> variables() {
+        return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    /**
+     * Evaluates the plan
+     *
+     * @param values values of the variables, in the order of variables()
+     * @return Num storing the value of the expression, zero for an empty one
+     */
+    public Num evaluate(Num... values) {
+        if (values.length < variables.length) {
+            throw new IllegalArgumentException("Expected values for " + variables());
+        }
+        Num[] stack = new Num[maxDepth];
+        int top = 0;
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case CONSTANT:
+                    stack[top++] = constants[args[i]];
+                    break;
+                case VARIABLE:
+                    stack[top++] = values[args[i]];
+                    break;
+                default:
+                    top--;
+                    stack[top - 1] = apply(ops[i], stack[top - 1], stack[top]);
+                    stack[top] = null;
+            }
+        }
+        return top == 0 ? new Num(0) : stack[0];
+    }
+
+    /**
+     * Evaluates the plan
+     *
+     * @param bindings value of every variable
+     * @return Num storing the value of the expression, zero for an empty one
+     */
+    public Num evaluate(Map<String, Num> bindings) {
+        Num[] values = new Num[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            values[i] = bindings.get(variables[i]);
+            if (values[i] == null) {
+                throw new IllegalArgumentException("No value for " + variables[i]);
+            }
+        }
+        return evaluate(values);
+    }
+
+    /**
+     * Evaluates the plan like evaluate, with independent subexpressions
+     * evaluated concurrently and identical subexpressions evaluated once
+     *
+     * @param values values of the variables, in the order of variables()
+     * @return Num storing the value of the expression, zero for an empty one
+     */
+    public Num evaluateParallel(Num... values) {
+        if (values.length < variables.length) {
+            throw new IllegalArgumentException("Expected values for " + variables());
+        }
+        Dag d = dag;
+        if (d == null) {
+            d = new Dag(this);
+            dag = d;
+        }
+        if (d.root < 0) {
+            return new Num(0);
+        }
+        NodeTask[] tasks = new NodeTask[d.ops.length];
+        for (int i = 0; i < tasks.length; i++) {
+            if (d.ops[i] != CONSTANT && d.ops[i] != VARIABLE) {
+                tasks[i] = new NodeTask(d, tasks, values, i);
+            }
+        }
+        NodeTask root = tasks[d.root];
+        if (root == null) {
+            return d.leaf(d.root, values);
+        }
+        root.setForkJoinTaskTag((short) 1);
+        return Num.multiplyPool.invoke(root);
+    }
+
+    /**
+     * Expression as a DAG: node i applies ops[i] to nodes left[i] and
+     * right[i], or is a leaf whose constant or variable index is left[i].
+     * Operands come before the nodes using them. Nodes are hash-consed, so
+     * identical subexpressions (up to the order of the operands of "+" and
+     * "*") are a single node.
+     */
+    private static final class Dag {
+
+        final byte[] ops;
+        final int[] left;
+        final int[] right;
+        final Num[] constants;
+
+        /**
+         * node of the whole expression, -1 for an empty one
+         */
+        final int root;
+
+        Dag(ExpressionPlan plan) {
+            int n = plan.ops.length;
+            byte[] nodeOps = new byte[n];
+            int[] nodeLeft = new int[n];
+            int[] nodeRight = new int[n];
+            Map<Long, Integer> nodes = new HashMap<>();
+            Map<String, Integer> literals = new HashMap<>();
+            int[] stack = new int[n];
+            int top = 0;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                byte op = plan.ops[i];
+                int a;
+                int b = 0;
+                if (op == CONSTANT) {
+                    a = literals.computeIfAbsent(plan.constants[plan.args[i]].toString(), k -> literals.size());
+                } else if (op == VARIABLE) {
+                    a = plan.args[i];
+                } else {
+                    b = stack[--top];
+                    a = stack[--top];
+                    if ((op == ADD || op == MULTIPLY) && a > b) {
+                        int t = a;
+                        a = b;
+                        b = t;
+                    }
+                }
+                long key = (long) op << 60 | (long) a << 30 | b;
+                Integer node = nodes.get(key);
+                if (node == null) {
+                    node = count++;
+                    nodes.put(key, node);
+                    nodeOps[node] = op;
+                    nodeLeft[node] = op == CONSTANT ? plan.args[i] : a;
+                    nodeRight[node] = b;
+                }
+                stack[top++] = node;
+            }
+            ops = Arrays.copyOf(nodeOps, count);
+            left = Arrays.copyOf(nodeLeft, count);
+            right = Arrays.copyOf(nodeRight, count);
+            constants = plan.constants;
+            root = top == 0 ? -1 : stack[0];
+        }
+
+        /**
+         * @return value of leaf node i
+         */
+        Num leaf(int i, Num[] values) {
+            return ops[i] == CONSTANT ? constants[left[i]] : values[left[i]];
+        }
+    }
+
+    /**
+     * Evaluation of one operator node of a Dag. A node may be an operand of
+     * several nodes: the first one to claim its task (by setting the task's
+     * tag) runs it, the others join it.
+     */
+    private static final class NodeTask extends RecursiveTask<Num> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Dag dag;
+        private final NodeTask[] tasks;
+        private final Num[] values;
+        private final int node;
+
+        NodeTask(Dag dag, NodeTask[] tasks, Num[] values, int node) {
+            this.dag = dag;
+            this.tasks = tasks;
+            this.values = values;
+            this.node = node;
+        }
+
+        @Override
+        protected Num compute() {
+            NodeTask left = tasks[dag.left[node]];
+            NodeTask right = tasks[dag.right[node]];
+            if (right != null && right.compareAndSetForkJoinTaskTag((short) 0, (short) 1)) {
+                right.fork();
+            }
+            Num a;
+            if (left == null) {
+                a = dag.leaf(dag.left[node], values);
+            } else if (left.compareAndSetForkJoinTaskTag((short) 0, (short) 1)) {
+                a = left.invoke();
+            } else {
+                a = left.join();
+            }
+            Num b = right == null ? dag.leaf(dag.right[node], values) : right.join();
+            return apply(dag.ops[node], a, b);
+        }
+    }
+
+    /**
+     * @return the expression in postfix, one token per string
+     */
+    String[] postfix() {
+        String[] tokens = new String[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case CONSTANT:
+                    tokens[i] = constants[args[i]].toString();
+                    break;
+                case VARIABLE:
+                    tokens[i] = variables[args[i]];
+                    break;
+                default:
+                    tokens[i] = String.valueOf("??+-*/%^".charAt(ops[i]));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Applies a binary operator. "^" takes the exponent as a long, like
+     * Num.power.
+     */
+    static Num apply(byte op, Num a, Num b) {
+        switch (op) {
+            case ADD:
+                return Num.add(a, b);
+            case SUBTRACT:
+                return Num.subtract(a, b);
+            case MULTIPLY:
+                return Num.product(a, b);
+            case DIVIDE:
+                return Num.divide(a, b);
+            case MOD:
+                return Num.mod(a, b);
+            default:
+                return Num.power(a, toLong(b));
+        }
+    }
+
+    /**
+     * @return value of x as a long
+     * @throws ArithmeticException if x does not fit in a long
+     */
+    private static long toLong(Num x) {
+        long value = 0;
+        for (int i = x.len - 1; i >= 0; i--) {
+            if (value > (Long.MAX_VALUE - x.arr[i]) / x.base) {
+                throw new ArithmeticException("Exponent is too large");
+            }
+            value = value * x.base + x.arr[i];
+        }
+        return x.isNegative ? -value : value;
+    }
+
+    private enum TokenType {
+        NUMBER, VARIABLE, OPERATOR, OPEN, CLOSE, ERROR
+    }
+
+    /**
+     * Classifies a token by looking at its characters
+     */
+    private static TokenType tokenType(String s) {
+        if (s.isEmpty()) {
+            return TokenType.ERROR;
+        }
+        char first = s.charAt(0);
+        if (isDigit(first)) {
+            for (int i = 1; i < s.length(); i++) {
+                if (!isDigit(s.charAt(i))) {
+                    return TokenType.ERROR;
+                }
+            }
+            return TokenType.NUMBER;
+        }
+        if (isLetter(first)) {
+            for (int i = 1; i < s.length(); i++) {
+                if (!isLetter(s.charAt(i)) && !isDigit(s.charAt(i))) {
+                    return TokenType.ERROR;
+                }
+            }
+            return TokenType.VARIABLE;
+        }
+        if (s.length() > 1) {
+            return TokenType.ERROR;
+        }
+        switch (first) {
+            case '(':
+                return TokenType.OPEN;
+            case ')':
+                return TokenType.CLOSE;
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '%':
+            case '^':
+                return TokenType.OPERATOR;
+            default:
+                return TokenType.ERROR;
+        }
+    }
+
+    /**
+     * @return precedence of a binary operator, higher binds tighter
+     */
+    private static int precedence(String op) {
+        switch (op.charAt(0)) {
+            case '+':
+            case '-':
+                return 11;
+            case '^':
+                return 14;
+            default:
+                return 12;
+        }
+    }
+
+    private static byte opcode(char op) {
+        switch (op) {
+            case '+':
+                return ADD;
+            case '-':
+                return SUBTRACT;
+            case '*':
+                return MULTIPLY;
+            case '/':
+                return DIVIDE;
+            case '%':
+                return MOD;
+            default:
+                return POWER;
+        }
+    }
+
+    private static String last(List<String> stack) {
+        return stack.get(stack.size() - 1);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.Arrays;
+
+/**
+ * Arithmetic modulo a fixed modulus m using Montgomery multiplication.
+ *
+ * Residues are stored as exactly k digits (k = number of digits of m) in
+ * Montgomery form x * R mod m with R = base^k, so that a product only needs
+ * a multiplication and a reduction by R instead of a long division by m.
+ * Montgomery form needs m to be coprime with the base; otherwise (e.g. an even
+ * modulus in BINARY_BASE or a multiple of 13 in the default base) residues are
+ * stored as is and products are reduced with long division.
+ *
+ * A context is built once per modulus and cached on it (see Num.modPow).
+ * Odd moduli are handled in BINARY_BASE whatever their own base is.
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+final class Montgomery {
+
+    /**
+     * Number of digits of the modulus from which the reduction uses full
+     * products (three multiplications) instead of one pass per digit
+     */
+    private static final int REDUCTION_THRESHOLD = 2048;
+
+    /**
+     * Base of the digits
+     */
+    final long base;
+
+    /**
+     * Digits of the modulus, most significant one non zero
+     */
+    private final long[] modulus;
+
+    /**
+     * Number of digits of the modulus and of every residue
+     */
+    private final int k;
+
+    /**
+     * Whether residues are in Montgomery form
+     */
+    private final boolean montgomery;
+
+    /**
+     * -m^-1 mod base
+     */
+    private final long inverse;
+
+    /**
+     * -m^-1 mod R, only for moduli of at least REDUCTION_THRESHOLD digits
+     */
+    private final long[] fullInverse;
+
+    /**
+     * R^2 mod m, converts residues to Montgomery form
+     */
+    private final long[] rSquared;
+
+    /**
+     * Builds the context of a positive modulus. Odd moduli are handled in
+     * BINARY_BASE, where carries are shifts.
+     *
+     * @param modulus modulus greater than 1
+     * @return context for modulus
+     */
+    static Montgomery of(Num modulus) {
+        Num m = modulus.base == Num.BINARY_BASE ? modulus : modulus.convertBase(Num.BINARY_BASE);
+        if ((m.arr[0] & 1) == 0) {
+            m = modulus;
+        }
+        return new Montgomery(m.arr, Num.significantLength(m.arr, 0, m.len), m.base);
+    }
+
+    /**
+     * @param m digits of the modulus, least significant first
+     * @param len number of significant digits of m
+     * @param base base of the digits
+     */
+    Montgomery(long[] m, int len, long base) {
+        this.base = base;
+        this.k = len;
+        this.modulus = Arrays.copyOf(m, len);
+        long inverse0 = Num.inverse(modulus[0], base);
+        this.montgomery = inverse0 != 0;
+        if (montgomery) {
+            inverse = base - inverse0;
+            fullInverse = k >= REDUCTION_THRESHOLD ? negativeInverse() : null;
+            long[] r2 = new long[2 * k + 1];
+            r2[2 * k] = 1;
+            rSquared = remainder(r2);
+        } else {
+            inverse = 0;
+            fullInverse = null;
+            rSquared = null;
+        }
+    }
+
+    /**
+     * @return residue of magnitude x[0..len-1], which must be less than m
+     */
+    long[] toResidue(long[] x, int len) {
+        long[] residue = Arrays.copyOf(x, k);
+        Arrays.fill(residue, Math.min(len, k), k, 0);
+        return montgomery ? multiply(residue, rSquared) : residue;
+    }
+
+    /**
+     * @return digits of the number represented by a residue
+     */
+    long[] fromResidue(long[] x) {
+        if (!montgomery) {
+            return x.clone();
+        }
+        long[] t = new long[2 * k + 1];
+        System.arraycopy(x, 0, t, 0, k);
+        return reduce(t);
+    }
+
+    /**
+     * @return residue of 1, the modulus must be greater than 1
+     */
+    long[] one() {
+        return toResidue(new long[]{1}, 1);
+    }
+
+    /**
+     * @return residue of the product of residues x and y
+     */
+    long[] multiply(long[] x, long[] y) {
+        return reduceProduct(Num.multiply(x, 0, k, y, 0, k, base));
+    }
+
+    /**
+     * @return residue of the square of residue x
+     */
+    long[] square(long[] x) {
+        return reduceProduct(Num.square(x, 0, k, base, null));
+    }
+
+    /**
+     * @return residue of a product of two residues
+     */
+    private long[] reduceProduct(long[] product) {
+        long[] t = new long[2 * k + 1];
+        System.arraycopy(product, 0, t, 0, Math.min(product.length, 2 * k));
+        return montgomery ? reduce(t) : remainder(t);
+    }
+
+    /**
+     * @return t mod m as k digits
+     */
+    private long[] remainder(long[] t) {
+        return Arrays.copyOf(Num.divideMagnitudes(t, t.length, modulus, k, base)[1], k);
+    }
+
+    /**
+     * Montgomery reduction of t < m * R, stored in 2k + 1 digits which are
+     * overwritten
+     *
+     * @return t / R mod m as k digits
+     */
+    private long[] reduce(long[] t) {
+        long[] r;
+        if (fullInverse == null && Num.isBinary(base)) {
+            int bits = Long.numberOfTrailingZeros(base);
+            long mask = base - 1;
+            for (int i = 0; i < k; i++) {
+                long u = t[i] * inverse & mask;
+                long carry = 0;
+                for (int j = 0; j < k; j++) {
+                    long total = t[i + j] + u * modulus[j] + carry;
+                    t[i + j] = total & mask;
+                    carry = total >>> bits;
+                }
+                for (int j = i + k; carry != 0; j++) {
+                    long total = t[j] + carry;
+                    t[j] = total & mask;
+                    carry = total >>> bits;
+                }
+            }
+            r = Arrays.copyOfRange(t, k, 2 * k + 1);
+        } else if (fullInverse == null) {
+            for (int i = 0; i < k; i++) {
+                long u = t[i] * inverse % base;
+                long carry = 0;
+                for (int j = 0; j < k; j++) {
+                    long total = t[i + j] + u * modulus[j] + carry;
+                    t[i + j] = total % base;
+                    carry = total / base;
+                }
+                for (int j = i + k; carry != 0; j++) {
+                    long total = t[j] + carry;
+                    if (total >= base) {
+                        t[j] = total - base;
+                        carry = 1;
+                    } else {
+                        t[j] = total;
+                        carry = 0;
+                    }
+                }
+            }
+            r = Arrays.copyOfRange(t, k, 2 * k + 1);
+        } else {
+            // q = t * (-m^-1) mod R makes t + q * m divisible by R
+            long[] q = Num.multiply(t, 0, k, fullInverse, 0, k, base);
+            long[] qm = Num.multiply(q, 0, Math.min(k, q.length), modulus, 0, k, base);
+            Num.addInPlace(t, 0, qm, qm.length, base);
+            r = Arrays.copyOfRange(t, k, 2 * k + 1);
+        }
+        if (compare(r, modulus) >= 0) {
+            Num.subtractInPlace(r, modulus, base);
+        }
+        return Arrays.copyOf(r, k);
+    }
+
+    /**
+     * @return -m^-1 mod R by Newton's iteration y = y + y * (m * y + 1),
+     * which doubles the number of correct digits each step
+     */
+    private long[] negativeInverse() {
+        long[] y = {inverse};
+        int precision = 1;
+        while (precision < k) {
+            int next = Math.min(2 * precision, k);
+            long[] e = low(Num.multiply(modulus, 0, next, y, 0, precision, base), next);
+            addOne(e);
+            long[] ye = low(Num.multiply(y, 0, precision, e, 0, next, base), next);
+            long[] sum = new long[next + 1];
+            System.arraycopy(y, 0, sum, 0, precision);
+            Num.addInPlace(sum, 0, ye, next, base);
+            y = Arrays.copyOf(sum, next);
+            precision = next;
+        }
+        return y;
+    }
+
+    /**
+     * @return lowest n digits of x
+     */
+    private static long[] low(long[] x, int n) {
+        return Arrays.copyOf(x, n);
+    }
+
+    /**
+     * Adds 1 to magnitude x, dropping the carry out of its last digit
+     */
+    private void addOne(long[] x) {
+        for (int i = 0; i < x.length; i++) {
+            if (x[i] + 1 < base) {
+                x[i]++;
+                return;
+            }
+            x[i] = 0;
+        }
+    }
+
+    /**
+     * Compares magnitude a with magnitude b, where a may have more digits
+     */
+    private static int compare(long[] a, long[] b) {
+        for (int i = a.length - 1; i >= b.length; i--) {
+            if (a[i] != 0) {
+                return 1;
+            }
+        }
+        for (int i = b.length - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,319 @@
+import java.util.Arrays;
+
+/**
+ * Mutable accumulator for Num. Operations update a growable array of digits
+ * in place instead of allocating a new Num for every result, which keeps
+ * iterative computations (sums, sequences) from churning memory.
+ *
+ * Digits are stored like in Num: digits[0..len-1] in base base, least
+ * significant first. Digits from len onwards are always zero.
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+public class MutableNum {
+
+    /**
+     * base of the digits
+     */
+    private final long base;
+
+    /**
+     * growable array of digits
+     */
+    private long[] digits;
+
+    /**
+     * previous digits array, reused for the next product
+     */
+    private long[] spare;
+
+    /**
+     * number of digits in use, at least 1
+     */
+    private int len;
+
+    /**
+     * boolean flag to represent negative numbers
+     */
+    private boolean isNegative;
+
+    /**
+     * Creates an accumulator holding x in the default base
+     *
+     * @param x initial value
+     */
+    public MutableNum(long x) {
+        this(new Num(x));
+    }
+
+    /**
+     * Creates an accumulator holding x, in the base of x
+     *
+     * @param x initial value
+     */
+    public MutableNum(Num x) {
+        this.base = x.base;
+        this.digits = Arrays.copyOf(x.arr, Math.max(x.len + 1, 4));
+        this.len = x.len;
+        this.isNegative = x.isNegative;
+    }
+
+    /**
+     * this = this + x
+     *
+     * @param x Num to add
+     * @return this accumulator
+     */
+    public MutableNum addTo(Num x) {
+        if (x.base != base) {
+            x = x.convertBase(base);
+        }
+        add(x.arr, x.len, x.isNegative);
+        return this;
+    }
+
+    /**
+     * this = this + x
+     *
+     * @param x accumulator to add, may be this
+     * @return this accumulator
+     */
+    public MutableNum addTo(MutableNum x) {
+        if (x.base != base) {
+            return addTo(x.toNum());
+        }
+        add(x == this ? Arrays.copyOf(x.digits, x.len) : x.digits, x.len, x.isNegative);
+        return this;
+    }
+
+    /**
+     * this = this - x
+     *
+     * @param x Num to subtract
+     * @return this accumulator
+     */
+    public MutableNum subtractFrom(Num x) {
+        if (x.base != base) {
+            x = x.convertBase(base);
+        }
+        add(x.arr, x.len, !x.isNegative);
+        return this;
+    }
+
+    /**
+     * this = this - x
+     *
+     * @param x accumulator to subtract, may be this
+     * @return this accumulator
+     */
+    public MutableNum subtractFrom(MutableNum x) {
+        if (x.base != base) {
+            return subtractFrom(x.toNum());
+        }
+        add(x == this ? Arrays.copyOf(x.digits, x.len) : x.digits, x.len, !x.isNegative);
+        return this;
+    }
+
+    /**
+     * this = this * m
+     *
+     * @param m multiplier
+     * @return this accumulator
+     */
+    public MutableNum multiplyBy(long m) {
+        if (m == 0) {
+            Arrays.fill(digits, 0, len, 0);
+            len = 1;
+            isNegative = false;
+            return this;
+        }
+        isNegative ^= m < 0;
+        if (m != Long.MIN_VALUE && Math.abs(m) < base) {
+            multiplyBySmall(Math.abs(m));
+        } else {
+            Num factor = new Num(m).convertBase(base);
+            multiplyBy(factor.arr, factor.len);
+        }
+        return this;
+    }
+
+    /**
+     * this = this * this
+     *
+     * @return this accumulator
+     */
+    public MutableNum square() {
+        isNegative = false;
+        multiplyBy(digits, len);
+        return this;
+    }
+
+    /**
+     * Copies the current value into an immutable Num
+     *
+     * @return Num equal to the current value
+     */
+    public Num toNum() {
+        return Num.fromDigits(Arrays.copyOf(digits, len), isNegative, base);
+    }
+
+    /**
+     * @return Base of the accumulator
+     */
+    public long base() {
+        return base;
+    }
+
+    @Override
+    public String toString() {
+        return toNum().toString();
+    }
+
+    /**
+     * this = this + (-1)^negative * b[0..bLen-1]
+     */
+    private void add(long[] b, int bLen, boolean negative) {
+        if (isNegative == negative) {
+            addMagnitude(b, bLen);
+            return;
+        }
+        if (compareMagnitude(b, bLen) >= 0) {
+            subtractMagnitude(b, bLen);
+        } else {
+            reverseSubtractMagnitude(b, bLen);
+            isNegative = negative;
+        }
+        if (len == 1 && digits[0] == 0) {
+            isNegative = false;
+        }
+    }
+
+    /**
+     * |this| = |this| + b
+     */
+    private void addMagnitude(long[] b, int bLen) {
+        ensureCapacity(Math.max(len, bLen) + 1);
+        long carry = 0;
+        int i = 0;
+        while (i < bLen) {
+            long total = digits[i] + b[i] + carry;
+            carry = total >= base ? 1 : 0;
+            digits[i] = total - carry * base;
+            i++;
+        }
+        while (carry > 0) {
+            long total = digits[i] + carry;
+            carry = total >= base ? 1 : 0;
+            digits[i] = total - carry * base;
+            i++;
+        }
+        len = Math.max(len, i);
+        trim();
+    }
+
+    /**
+     * |this| = |this| - b, assumes |this| is greater than or equal to b
+     */
+    private void subtractMagnitude(long[] b, int bLen) {
+        long borrow = 0;
+        int i = 0;
+        while (i < bLen || borrow > 0) {
+            long total = digits[i] - (i < bLen ? b[i] : 0) - borrow;
+            borrow = total < 0 ? 1 : 0;
+            digits[i] = total + borrow * base;
+            i++;
+        }
+        trim();
+    }
+
+    /**
+     * |this| = b - |this|, assumes b is greater than |this|
+     */
+    private void reverseSubtractMagnitude(long[] b, int bLen) {
+        ensureCapacity(bLen);
+        long borrow = 0;
+        for (int i = 0; i < bLen; i++) {
+            long total = b[i] - digits[i] - borrow;
+            borrow = total < 0 ? 1 : 0;
+            digits[i] = total + borrow * base;
+        }
+        len = bLen;
+        trim();
+    }
+
+    /**
+     * @return +1, 0 or -1 as |this| is greater than, equal to or less than b
+     */
+    private int compareMagnitude(long[] b, int bLen) {
+        bLen = Math.max(1, Num.significantLength(b, 0, bLen));
+        if (len != bLen) {
+            return len > bLen ? 1 : -1;
+        }
+        for (int i = len - 1; i >= 0; i--) {
+            if (digits[i] != b[i]) {
+                return digits[i] > b[i] ? 1 : -1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * |this| = |this| * m for 0 < m < base, in place
+     */
+    private void multiplyBySmall(long m) {
+        ensureCapacity(len + 2);
+        long carry = 0;
+        int i = 0;
+        while (i < len) {
+            // carry is added after the division to avoid an overflow
+            long total = digits[i] * m;
+            long val = total % base + carry;
+            carry = total / base + val / base;
+            digits[i] = val % base;
+            i++;
+        }
+        while (carry > 0) {
+            digits[i++] = carry % base;
+            carry /= base;
+        }
+        len = i;
+    }
+
+    /**
+     * |this| = |this| * b, using the spare array for the product when it is
+     * big enough
+     */
+    private void multiplyBy(long[] b, int bLen) {
+        long[] product;
+        if (b == digits) {
+            product = Num.square(digits, 0, len, base, spare);
+        } else {
+            product = Num.multiply(digits, 0, len, b, 0, bLen, base, spare != b ? spare : null);
+        }
+        int productLen = Math.max(1, Num.significantLength(product, 0, product.length));
+        spare = digits;
+        digits = product;
+        len = productLen;
+        ensureCapacity(len + 1);
+    }
+
+    /**
+     * Grows the digits array so that it holds at least capacity digits
+     */
+    private void ensureCapacity(int capacity) {
+        if (digits.length < capacity) {
+            digits = Arrays.copyOf(digits, Math.max(capacity, digits.length + (digits.length >> 1)));
+        }
+    }
+
+    /**
+     * Drops leading zero digits
+     */
+    private void trim() {
+        while (len > 1 && digits[len - 1] == 0) {
+            len--;
+        }
+    }
+}
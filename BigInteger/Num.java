@@ -1,4 +1,15 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
 
 /**
  * Version : 1.0
@@ -12,6 +23,27 @@ public class Num implements Comparable<Num> {
      */
     static long defaultBase = 3037000499L;
 
+    /**
+     * Largest supported base, product of two digits must fit in a long
+     */
+    public static final long MAX_BASE = 3037000499L;
+
+    /**
+     * Power of 2 base (2^31). In a power of 2 base carries are shifts and
+     * digits are masks instead of divisions, and shifts move whole digits.
+     */
+    public static final long BINARY_BASE = 1L << 31;
+
+    /**
+     * Decimal digits per digit of DECIMAL_BASE, used for parsing and printing
+     */
+    private static final int DECIMAL_DIGITS = 9;
+
+    /**
+     * Largest power of 10 which can be used as a base for arithmetic
+     */
+    private static final long DECIMAL_BASE = 1000000000L;
+
     /**
      * base provided by user (if any)
      */
@@ -33,6 +65,19 @@ public class Num implements Comparable<Num> {
      */
     int len;
 
+    /**
+     * Result of the last convertBase, so that repeated operations with Num
+     * of another base convert this number only once. Held softly, so that
+     * neither copy keeps the other alive.
+     */
+    private volatile SoftReference<Num> converted;
+
+    /**
+     * Montgomery context of this number as a modulus, built by the first
+     * modPow with this modulus and reused by the later ones
+     */
+    private volatile Montgomery montgomery;
+
     /**
      * Constructor for creating array accepting arbitrarily large number in form
      * of string
@@ -40,15 +85,7 @@ public class Num implements Comparable<Num> {
      * @param s string which stores arbitrarily large number
      */
     public Num(String s) {
-        this.len = (int) Math.ceil(s.length() / Math.log10(this.base)); // Calculates the length
-        this.arr = new long[this.len];
-        if (s.charAt(0) == '-') {
-            this.isNegative = true;
-            this.convertToLongBase(new StringBuilder(s.substring(1)), 0);
-        } else {
-            this.convertToLongBase(new StringBuilder(s), 0);
-        }
-        this.clean();
+        this(s, defaultBase);
     }
 
     /**
@@ -58,7 +95,7 @@ public class Num implements Comparable<Num> {
      * @param x long that stores the number
      */
     public Num(long x) {
-        this(String.valueOf(x));
+        this(x, defaultBase);
     }
 
     /**
@@ -69,16 +106,17 @@ public class Num implements Comparable<Num> {
      * @param base the base that is used to create the array
      */
     private Num(long x, long base) {
-        String s = String.valueOf(x);
         this.base = base;
-        this.len = (int) Math.ceil(s.length() / Math.log10(this.base)); // Calculates the length
-        this.arr = new long[this.len];
-        if (s.charAt(0) == '-') {
-            this.isNegative = true;
-            this.convertToLongBase(new StringBuilder(s.substring(1)), 0);
-        } else {
-            this.convertToLongBase(new StringBuilder(s), 0);
-        }
+        this.isNegative = x < 0;
+        long[] digits = new long[64];
+        int length = 0;
+        // Digits are taken from x itself, -Long.MIN_VALUE does not fit a long
+        do {
+            digits[length++] = Math.abs(x % base);
+            x /= base;
+        } while (x != 0);
+        this.arr = Arrays.copyOf(digits, length);
+        this.len = length;
         this.clean();
     }
 
@@ -90,16 +128,7 @@ public class Num implements Comparable<Num> {
      * @param base the base that is used to create the array
      */
     private Num(String s, int base) {
-        this.base = base;
-        this.len = (int) Math.ceil(s.length() / Math.log10(this.base)); // Calculates the length
-        this.arr = new long[this.len];
-        if (s.charAt(0) == '-') {
-            this.isNegative = true;
-            this.convertToLongBase(new StringBuilder(s.substring(1)), 0);
-        } else {
-            this.convertToLongBase(new StringBuilder(s), 0);
-        }
-        this.clean();
+        this(s, (long) base);
     }
 
     /**
@@ -111,14 +140,33 @@ public class Num implements Comparable<Num> {
      */
     private Num(String s, long base) {
         this.base = base;
-        this.len = (int) Math.ceil(s.length() / Math.log10(this.base)); // Calculates the length
-        this.arr = new long[this.len];
-        if (s.charAt(0) == '-') {
+        int start = 0;
+        if (s.length() > 0 && s.charAt(0) == '-') {
             this.isNegative = true;
-            this.convertToLongBase(new StringBuilder(s.substring(1)), 0);
-        } else {
-            this.convertToLongBase(new StringBuilder(s), 0);
+            start = 1;
+        }
+        if (start == s.length()) {
+            throw new NumberFormatException("No digits in \"" + s + "\"");
         }
+        // Chunks of DECIMAL_DIGITS digits, least significant first
+        int chunks = (s.length() - start + DECIMAL_DIGITS - 1) / DECIMAL_DIGITS;
+        long[] decimal = new long[chunks];
+        int end = s.length();
+        for (int i = 0; i < chunks; i++) {
+            int from = Math.max(start, end - DECIMAL_DIGITS);
+            long chunk = 0;
+            for (int j = from; j < end; j++) {
+                char c = s.charAt(j);
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("For input string: \"" + s + "\"");
+                }
+                chunk = chunk * 10 + (c - '0');
+            }
+            decimal[i] = chunk;
+            end = from;
+        }
+        this.arr = RadixConversion.convert(decimal, chunks, DECIMAL_BASE, base);
+        this.len = this.arr.length;
         this.clean();
     }
 
@@ -135,50 +183,6 @@ public class Num implements Comparable<Num> {
         this.clean();
     }
 
-    /**
-     * Converts a string into the default base using traditional way of
-     * converting a number into default base using recursion.
-     *
-     * @param q StringBuilder object from which array is to be created
-     * @param index current index of array where the number is to be stored
-     */
-    private void convertToLongBase(StringBuilder q, int index) {
-        if (q.length() <= 0) {
-            return;
-        }
-        if (q.length() < String.valueOf(base).length()) {
-            this.arr[index] = Long.parseLong(q.toString());
-            return;
-        }
-        StringBuilder dividend = new StringBuilder();
-        int i = 0;
-        long temp = 0;
-        StringBuilder num = new StringBuilder();
-        while (i < q.length()) {
-            temp = (temp * 10) + (q.charAt(i) - '0');
-            i++;
-            if (temp >= base) {
-                num.append(temp % base);
-                dividend.append(temp / base);
-                temp = temp % base;
-                break;
-            }
-        }
-        while (i < q.length()) {
-            temp = (temp * 10) + (q.charAt(i) - '0');
-            if (temp >= base) {
-                num.append(temp % base);
-                dividend.append(temp / base);
-                temp = temp % base;
-            } else {
-                dividend.append('0');
-            }
-            i++;
-        }
-        this.arr[index] = temp;
-        convertToLongBase(dividend, index + 1);
-    }
-
     /**
      * Addition of 2 Num objects
      *
@@ -197,27 +201,26 @@ public class Num implements Comparable<Num> {
         if (!(a.isNegative ^ b.isNegative)) {
             long carry = 0;
             int i = 0;
+            // Sum of two digits and a carry is below 2 * base, so the carry
+            // is at most 1 and no division is needed
             while (i < a.arr.length && i < b.arr.length) {
                 long total = a.arr[i] + b.arr[i] + carry;
-                carry = total / base;
-                long val = total % base;
-                result[i] = val;
+                carry = total >= base ? 1 : 0;
+                result[i] = total - carry * base;
                 i++;
             }
 
             while (i < a.arr.length) {
                 long total = a.arr[i] + carry;
-                carry = total / base;
-                long val = total % base;
-                result[i] = val;
+                carry = total >= base ? 1 : 0;
+                result[i] = total - carry * base;
                 i++;
             }
 
             while (i < b.arr.length) {
                 long total = b.arr[i] + carry;
-                carry = total / base;
-                long val = total % base;
-                result[i] = val;
+                carry = total >= base ? 1 : 0;
+                result[i] = total - carry * base;
                 i++;
             }
 
@@ -303,7 +306,66 @@ public class Num implements Comparable<Num> {
     }
 
     /**
-     * Product of 2 Num objects in old school way
+     * Most bits shifted in one pass over the digits, 2^SHIFT_STEP times a
+     * digit must fit in a long
+     */
+    private static final int SHIFT_STEP = 30;
+
+    /**
+     * Shifts longer than this many passes multiply or divide by a power of 2
+     * instead
+     */
+    private static final int SHIFT_PASSES = 8;
+
+    /**
+     * Operand size (in limbs) below which product uses the old school loop
+     */
+    static int karatsubaThreshold = 32;
+
+    /**
+     * Operand size (in limbs) from which product switches from Karatsuba to
+     * Toom-Cook 3-way multiplication
+     */
+    static int toomCookThreshold = 256;
+
+    /**
+     * Operand size (in limbs) from which product uses number theoretic
+     * transforms (see NumberTheoreticTransform)
+     */
+    static int nttThreshold = 768;
+
+    /**
+     * Divisor and quotient size (in limbs) from which division uses Newton's
+     * reciprocal instead of long division
+     */
+    static int newtonDivisionThreshold = 1024;
+
+    /**
+     * Operand size (in limbs) from which the sub-products of a multiplication
+     * run in parallel on multiplyPool. Balanced products from nttThreshold
+     * limbs go to NumberTheoreticTransform, which from this size splits its
+     * transforms into parallel tasks as well
+     */
+    static volatile int parallelThreshold = 1024;
+
+    /**
+     * Operand size (in limbs) from which squaring uses Karatsuba. Old school
+     * squaring does half the digit products, so it stays faster for longer
+     * than old school multiplication.
+     */
+    static int squareKaratsubaThreshold = 64;
+
+    /**
+     * Pool running the parallel sub-products (and parallel evaluation of
+     * ExpressionPlan)
+     */
+    static volatile ForkJoinPool multiplyPool = ForkJoinPool.commonPool();
+
+    /**
+     * Product of 2 Num objects. Old school way for small operands, Karatsuba
+     * and Toom-Cook 3-way for larger ones and number theoretic transforms for
+     * the largest (see karatsubaThreshold, toomCookThreshold and
+     * nttThreshold)
      *
      * @param a First Num Object
      * @param b Second Num Object
@@ -313,29 +375,11 @@ public class Num implements Comparable<Num> {
         if (a.base != b.base) {
             b = b.convertBase(a.base);
         }
-        long[] result = new long[a.arr.length + b.arr.length + 1]; // stores the intermediate digits
-        int j = 0;
-        long base = a.base;
-        while (j < b.len) {
-            long carry = 0;
-            int i = 0;
-            long val2 = b.arr[j];
-            int resIndex = j;
-            while (i < a.len) {
-                long val1 = a.arr[i] * val2;
-                long total = val1 + carry + result[resIndex];
-                carry = total / base;
-                result[resIndex] = total % base;
-                resIndex++;
-                i++;
-            }
-            while (carry > 0) {
-                long total = result[resIndex] + carry;
-                carry = total / base;
-                result[resIndex] = (result[resIndex] + total) % base;
-                resIndex++;
-            }
-            j++;
+        long[] result;
+        if (a == b) {
+            result = square(a.arr, 0, a.len, a.base, null);
+        } else {
+            result = multiply(a.arr, 0, a.len, b.arr, 0, b.len, a.base);
         }
         // Xor for maintaining correct sign
         Num product = new Num(result, (a.isNegative ^ b.isNegative));
@@ -345,457 +389,1945 @@ public class Num implements Comparable<Num> {
     }
 
     /**
-     * Power of a Num object
+     * Multiplies magnitudes a[aOff..aOff+aLen-1] and b[bOff..bOff+bLen-1],
+     * picking the algorithm from the size of the smaller operand. Operands of
+     * very different sizes are multiplied piece by piece.
      *
-     * @param a Num Object
-     * @param n long representing the power
-     * @return object which stores power of a to n
+     * @param a first array of digits
+     * @param aOff index of least significant digit of a
+     * @param aLen number of digits of a
+     * @param b second array of digits
+     * @param bOff index of least significant digit of b
+     * @param bLen number of digits of b
+     * @param base base of both the operands
+     * @return array of digits storing the product, leading zeros of the
+     * operands are not counted in its length
      */
-    public static Num power(Num a, long n) {
-        if (n <= 0) {
-            return new Num("1", a.base);
-        }
-        if (n == 1) {
-            return a;
-        }
-        if (n % 2 == 0) {
-            Num ret = power(Num.product(a, a), n / 2);
-            ret.base = a.base;
-            return ret;
-        } else {
-            Num ret = Num.product(a, power(Num.product(a, a), (n - 1) / 2));
-            ret.base = a.base;
-            return ret;
-        }
+    static long[] multiply(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base) {
+        return multiply(a, aOff, aLen, b, bOff, bLen, base, null);
     }
 
     /**
-     * Division of 2 Num using binary search
+     * Multiplies magnitudes like multiply above, storing the product in dest
+     * when it is big enough and the algorithm allows it. Digits of dest past
+     * the product are cleared. Dest must not be one of the operands.
      *
-     * @param a First Num Object
-     * @param b Second Num Object
-     * @return object that stores division of a and b
+     * @param dest array to reuse for the product, may be null
+     * @return dest or a new array storing the product
      */
-    public static Num divide(Num a, Num b) {
-        if (a.base != b.base) {
-            b = b.convertBase(a.base);
+    static long[] multiply(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base, long[] dest) {
+        aLen = significantLength(a, aOff, aLen);
+        bLen = significantLength(b, bOff, bLen);
+        if (aLen < bLen) {
+            return multiply(b, bOff, bLen, a, aOff, aLen, base, dest);
         }
-        Num left = new Num(0, a.base);
-        if (b.compareTo(left) == 0) {
-            throw new ArithmeticException();
+        int length = Math.max(1, aLen + bLen);
+        long[] result;
+        if (dest != null && dest.length >= length) {
+            result = dest;
+            Arrays.fill(result, 0);
+        } else {
+            result = new long[length];
         }
-        if (b.compareTo(new Num(1, a.base)) == 0) {
-            return a;
+        if (bLen == 0) {
+            return result;
+        }
+        if (bLen < karatsubaThreshold) {
+            schoolbook(a, aOff, aLen, b, bOff, bLen, base, result);
+            return result;
+        }
+        if (bLen >= nttThreshold && NumberTheoreticTransform.supports(aLen, bLen, base)) {
+            return NumberTheoreticTransform.multiply(a, aOff, aLen, b, bOff, bLen, base);
         }
-        Num right = new Num(a.arr, a.isNegative);
-        right.base = a.base;
-        while (left.compareTo(right) < 0) {
-            Num middle = Num.add(left, right).by2();
-            int compare = Num.product(middle, b).compareTo(a);
-            if (compare == 0 || middle.compareTo(left) == 0) {
-                middle.isNegative = (a.isNegative ^ b.isNegative);
-                middle.clean();
-                return middle;
-            } else if (compare < 0) {
-                left = middle;
+        if (aLen >= parallelThreshold) {
+            multiplyPiecesInParallel(a, aOff, aLen, b, bOff, bLen, base, result);
+            return result;
+        }
+        // Unbalanced operands: split a into pieces of b's size
+        for (int off = 0; off < aLen; off += bLen) {
+            int pieceLen = Math.min(bLen, aLen - off);
+            long[] piece;
+            if (pieceLen < bLen) {
+                piece = multiply(b, bOff, bLen, a, aOff + off, pieceLen, base, null);
             } else {
-                right = middle;
+                piece = multiplyBalanced(a, aOff + off, b, bOff, bLen, base);
             }
+            addInPlace(result, off, piece, piece.length, base);
         }
-        left.isNegative = (a.isNegative ^ b.isNegative);
-        left.clean();
-        return left;
+        return result;
     }
 
     /**
-     * Mod of 2 Num
-     *
-     * @param a First Num Object
-     * @param b Second Num Object
-     * @return Num storing mod of a and b
+     * Unbalanced multiplication like in multiply, with the pieces of a
+     * multiplied by b in parallel and then added into result one by one
      */
-    public static Num mod(Num a, Num b) {
-        if (b.isNegative) {
-            throw new ArithmeticException();
+    private static void multiplyPiecesInParallel(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base, long[] result) {
+        List<Supplier<long[]>> pieces = new ArrayList<>();
+        for (int off = 0; off < aLen; off += bLen) {
+            int pieceOff = aOff + off;
+            int pieceLen = Math.min(bLen, aLen - off);
+            if (pieceLen < bLen) {
+                pieces.add(() -> multiply(b, bOff, bLen, a, pieceOff, pieceLen, base, null));
+            } else {
+                pieces.add(() -> multiplyBalanced(a, pieceOff, b, bOff, bLen, base));
+            }
         }
-        if (a.base != b.base) {
-            b = b.convertBase(a.base);
+        List<long[]> products = invokeAll(pieces);
+        for (int i = 0; i < products.size(); i++) {
+            long[] piece = products.get(i);
+            addInPlace(result, i * bLen, piece, piece.length, base);
         }
-        Num division = Num.divide(a, b);
-        return Num.subtract(a, Num.product(division, b));
     }
 
     /**
-     * Square root of Num using binary search
+     * Runs the jobs as fork/join tasks on the multiplication pool. A caller
+     * running in another pool (or none) waits for the multiplication pool,
+     * a task of the multiplication pool forks the jobs right away
      *
-     * @param a Num Object
-     * @return Num storing square root of a
+     * @param jobs computations to run in parallel
+     * @return results of the jobs, in the same order
      */
-    public static Num squareRoot(Num a) {
-        if (a.isNegative) {
-            throw new ArithmeticException();
-        }
-        Num left = new Num(0, a.base);
-        Num right = new Num(a.arr, a.isNegative);
-        right.base = a.base;
-        while (left.compareTo(right) < 0) {
-            Num middle = Num.add(left, right).by2();
-            int compare = Num.product(middle, middle).compareTo(a);
-            Num newLeft = left;
-            Num newRight = right;
-            if (compare == 0) {
-                middle.clean();
-                return middle;
-            } else if (compare > 0) {
-                right = middle;
-            } else {
-                left = middle;
-            }
-            if (newLeft.compareTo(left) == 0 && newRight.compareTo(right) == 0) {
-                break;
-            }
+    static <T> List<T> invokeAll(List<Supplier<T>> jobs) {
+        ForkJoinPool pool = multiplyPool;
+        if (ForkJoinTask.getPool() != pool) {
+            return pool.invoke(new RecursiveTask<List<T>>() {
+                @Override
+                protected List<T> compute() {
+                    return forkAndJoin(jobs);
+                }
+            });
         }
-        left.clean();
-        return left;
+        return forkAndJoin(jobs);
     }
 
     /**
-     * Compares 2 Num objects. Sign is ignored, only magnitude is compared
-     *
-     * @param other Num object to be compared with current Num
-     * @return +1 if current num is greater than other num, 0 if equal and -1 if
-     * other is bigger
+     * Forks all jobs but the first, runs the first one in the current task
+     * and joins the others
      */
-    @Override
-    public int compareTo(Num other) {
-        if (other.base != this.base) {
-            other = other.convertBase(this.base);
+    private static <T> List<T> forkAndJoin(List<Supplier<T>> jobs) {
+        List<ForkJoinTask<T>> forked = new ArrayList<>();
+        for (int i = 1; i < jobs.size(); i++) {
+            forked.add(ForkJoinTask.adapt((Callable<T>) jobs.get(i)::get).fork());
         }
-        if (this.len > other.len) {
-            return 1;
-        } else if (this.len < other.len) {
-            return -1;
-        } else {
-            for (int i = this.len - 1; i >= 0; i--) {
-                if (this.arr[i] == other.arr[i]) {
-                    continue;
-                }
-                if (this.arr[i] > other.arr[i]) {
-                    return 1;
-                } else {
-                    return -1;
-                }
-            }
-            return 0;
+        List<T> results = new ArrayList<>();
+        results.add(jobs.get(0).get());
+        for (ForkJoinTask<T> task : forked) {
+            results.add(task.join());
         }
+        return results;
     }
 
     /**
-     * Prints the array of Num
+     * Sets the pool used by parallel multiplication
+     *
+     * @param pool fork/join pool to run sub-products on
      */
-    public void printList() {
-        System.out.println(this.base + ": " + Arrays.toString(this.arr));
+    public static void setMultiplyPool(ForkJoinPool pool) {
+        multiplyPool = Objects.requireNonNull(pool);
     }
 
     /**
-     * Converts current number into base 10
+     * Sets the operand size from which sub-products of a multiplication run
+     * in parallel
      *
-     * @return String containing current number in base 10
+     * @param limbs operand size in limbs
      */
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        LinkedList<Long> number = new LinkedList<>();
+    public static void setParallelThreshold(int limbs) {
+        parallelThreshold = limbs;
+    }
 
-        for (long a : arr) {
-            number.addFirst(a);
+    /**
+     * Multiplies two magnitudes of len digits each with the fastest algorithm
+     * available for that length
+     */
+    private static long[] multiplyBalanced(long[] a, int aOff, long[] b, int bOff, int len, long base) {
+        if (len >= nttThreshold && NumberTheoreticTransform.supports(len, len, base)) {
+            return NumberTheoreticTransform.multiply(a, aOff, len, b, bOff, len, base);
+        } else if (len >= toomCookThreshold) {
+            return toomCook3(a, aOff, len, b, bOff, len, base);
+        } else {
+            return karatsuba(a, aOff, len, b, bOff, len, base);
         }
+    }
 
-        while (number.size() > 0) {
-            long reminder = 0;
-            int size = number.size();
-            while (size-- > 0) {
-                number.add((reminder * base + number.peek()) / 10);
-                reminder = (reminder * base + number.peek()) % 10;
-                number.removeFirst();
+    /**
+     * Old school multiplication. Adds product of a and b into result, which
+     * must be zero and have at least aLen + bLen digits.
+     */
+    private static void schoolbook(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base, long[] result) {
+        if (isBinary(base)) {
+            schoolbookBinary(a, aOff, aLen, b, bOff, bLen, base, result);
+            return;
+        }
+        int j = 0;
+        while (j < bLen) {
+            long carry = 0;
+            int i = 0;
+            long val2 = b[bOff + j];
+            int resIndex = j;
+            while (i < aLen) {
+                // a digit product plus one digit always fits in a long, the
+                // carry is added after the division to avoid an overflow
+                long total = a[aOff + i] * val2 + result[resIndex];
+                long val = total % base + carry;
+                carry = total / base;
+                if (val >= base) {
+                    val -= base;
+                    carry++;
+                }
+                result[resIndex] = val;
+                resIndex++;
+                i++;
             }
-
-            while (!number.isEmpty() && number.peek() == 0) {
-                number.pop();
+            while (carry > 0) {
+                long total = result[resIndex] + carry;
+                carry = total / base;
+                result[resIndex] = total % base;
+                resIndex++;
             }
-
-            sb.append(reminder);
+            j++;
         }
+    }
 
-        if (isNegative) {
-            sb.append("-");
+    /**
+     * Old school multiplication for a power of 2 base, where carries are a
+     * shift and digits a mask. Adds product of a and b into result, which
+     * must be zero and have at least aLen + bLen digits.
+     */
+    private static void schoolbookBinary(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base, long[] result) {
+        int bits = Long.numberOfTrailingZeros(base);
+        long mask = base - 1;
+        for (int j = 0; j < bLen; j++) {
+            long carry = 0;
+            long val2 = b[bOff + j];
+            int resIndex = j;
+            for (int i = 0; i < aLen; i++) {
+                // digits have at most 31 bits, so the sum stays below 2^63
+                long total = a[aOff + i] * val2 + result[resIndex] + carry;
+                result[resIndex] = total & mask;
+                carry = total >>> bits;
+                resIndex++;
+            }
+            result[resIndex] = carry;
         }
-        return sb.reverse().toString();
     }
 
     /**
-     * @return Base of current Num
+     * @return true if base is a power of 2
      */
-    public long base() {
-        return base;
+    static boolean isBinary(long base) {
+        return (base & (base - 1)) == 0;
     }
 
     /**
-     * Converts number equal to "this" number, in base=newBase
-     *
-     * @param _newBase value of new base
-     * @return Num equal to current number in _newBase
+     * Karatsuba multiplication of operands of similar length. Uses 3 half
+     * sized products: a0*b0, a1*b1 and (a0 + a1)*(b0 + b1)
      */
-    public Num convertBase(int _newBase) {
-        Num result = new Num(toString(), _newBase);
-        result.isNegative = this.isNegative;
+    private static long[] karatsuba(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base) {
+        int half = (Math.max(aLen, bLen) + 1) / 2;
+        int a0Len = Math.min(aLen, half);
+        int b0Len = Math.min(bLen, half);
+        long[] sumA = addMagnitudes(a, aOff, a0Len, a, aOff + half, aLen - a0Len, base);
+        long[] sumB = addMagnitudes(b, bOff, b0Len, b, bOff + half, bLen - b0Len, base);
+        long[] z0;
+        long[] z1;
+        long[] z2;
+        if (Math.max(aLen, bLen) >= parallelThreshold) {
+            List<long[]> products = invokeAll(Arrays.<Supplier<long[]>>asList(
+                    () -> multiply(a, aOff, a0Len, b, bOff, b0Len, base),
+                    () -> multiply(sumA, 0, sumA.length, sumB, 0, sumB.length, base),
+                    () -> multiply(a, aOff + half, aLen - a0Len, b, bOff + half, bLen - b0Len, base)));
+            z0 = products.get(0);
+            z1 = products.get(1);
+            z2 = products.get(2);
+        } else {
+            z0 = multiply(a, aOff, a0Len, b, bOff, b0Len, base);
+            z1 = multiply(sumA, 0, sumA.length, sumB, 0, sumB.length, base);
+            z2 = multiply(a, aOff + half, aLen - a0Len, b, bOff + half, bLen - b0Len, base);
+        }
+        subtractInPlace(z1, z0, base);
+        subtractInPlace(z1, z2, base);
+
+        long[] result = new long[aLen + bLen];
+        addInPlace(result, 0, z0, z0.length, base);
+        addInPlace(result, half, z1, z1.length, base);
+        addInPlace(result, 2 * half, z2, z2.length, base);
         return result;
     }
 
     /**
-     * Converts number equal to "this" number, in base=newBase
+     * Squares magnitude a[off..off+len-1]. Like multiply with both operands
+     * equal, but each half of the work is done only once: cross products
+     * a[i]*a[j] are computed once and doubled, Karatsuba needs 3 squares and
+     * the transform of the operand is computed once.
      *
-     * @param _newBase
-     * @return Num equal to current number in _newBase
+     * @param dest array to reuse for the square, may be null
+     * @return dest or a new array storing the square, its digits past
+     * 2 * len are zero
      */
-    private Num convertBase(long _newBase) {
-        Num result = new Num(toString(), _newBase);
-        result.isNegative = this.isNegative;
+    static long[] square(long[] a, int off, int len, long base, long[] dest) {
+        len = significantLength(a, off, len);
+        if (len >= nttThreshold && NumberTheoreticTransform.supports(len, len, base)) {
+            return NumberTheoreticTransform.multiply(a, off, len, a, off, len, base);
+        }
+        if (len >= squareKaratsubaThreshold) {
+            return karatsubaSquare(a, off, len, base);
+        }
+        int length = Math.max(1, 2 * len);
+        long[] result;
+        if (dest != null && dest.length >= length) {
+            result = dest;
+            Arrays.fill(result, 0);
+        } else {
+            result = new long[length];
+        }
+        schoolbookSquare(a, off, len, base, result);
         return result;
     }
 
     /**
-     * Divides the Num by 2 using binary search
-     *
-     * @return Num that stores half the value
+     * Old school squaring. Adds the cross products a[i]*a[j], i < j, into
+     * result, doubles it and adds the squares a[i]*a[i]. Result must be zero
+     * and have at least 2 * len digits.
      */
-    public Num by2() {
-        Num half = new Num(0, this.base);
-        Num two = new Num(2, this.base);
-
-        while (Num.product(half, two).compareTo(this) < 0) {
-            Num pow = new Num(1, this.base);
-            Num newHalf = new Num(half.arr, half.isNegative);
-            newHalf.base = this.base;
-            while (Num.product(Num.add(half, pow), two).compareTo(this) < 0) {
-                half = Num.add(half, pow);
-                pow = Num.product(pow, two);
-            }
-            if (half.compareTo(newHalf) == 0) {
-                break;
+    private static void schoolbookSquare(long[] a, int off, int len, long base, long[] result) {
+        boolean binary = isBinary(base);
+        int bits = Long.numberOfTrailingZeros(base);
+        long mask = base - 1;
+        for (int i = 0; i < len - 1; i++) {
+            long val = a[off + i];
+            int resIndex = 2 * i + 1;
+            long carry = 0;
+            if (binary) {
+                for (int j = i + 1; j < len; j++) {
+                    long total = a[off + j] * val + result[resIndex] + carry;
+                    result[resIndex] = total & mask;
+                    carry = total >>> bits;
+                    resIndex++;
+                }
+            } else {
+                for (int j = i + 1; j < len; j++) {
+                    // carry is added after the division, as in schoolbook
+                    long total = a[off + j] * val + result[resIndex];
+                    long digit = total % base + carry;
+                    carry = total / base;
+                    if (digit >= base) {
+                        digit -= base;
+                        carry++;
+                    }
+                    result[resIndex] = digit;
+                    resIndex++;
+                }
             }
+            // digits past i + len are still zero
+            result[resIndex] = carry;
         }
-        Num one = new Num(1, this.base);
-        if (Num.product(two, Num.add(half, one)).compareTo(this) <= 0) {
-            half = Num.add(half, one);
+
+        long carry = 0;
+        for (int i = 0; i < 2 * len; i++) {
+            long total = 2 * result[i] + carry;
+            if (total >= base) {
+                result[i] = total - base;
+                carry = 1;
+            } else {
+                result[i] = total;
+                carry = 0;
+            }
+        }
+
+        carry = 0;
+        for (int i = 0; i < len; i++) {
+            long sq = a[off + i] * a[off + i];
+            long total = result[2 * i] + sq % base + carry;
+            result[2 * i] = total % base;
+            total = result[2 * i + 1] + sq / base + total / base;
+            result[2 * i + 1] = total % base;
+            carry = total / base;
         }
-        half.isNegative = this.isNegative;
-        half.clean();
-        return half;
     }
 
     /**
-     * Removes extra zeros at end of array. (in beginning of a number)
+     * Karatsuba squaring. Uses 3 half sized squares: a0^2, a1^2 and
+     * (a0 + a1)^2
      */
-    private void clean() {
-        if (this.len > 1) {
-            int length = this.len;
-            int i = this.len - 1;
-            while (i >= 1 && this.arr[i] == 0) {
-                length--;
-                i--;
-            }
-            long[] array = new long[length];
-            for (i = 0; i < length; i++) {
-                array[i] = this.arr[i];
-            }
-            this.len = length;
-            this.arr = array;
+    private static long[] karatsubaSquare(long[] a, int off, int len, long base) {
+        int half = (len + 1) / 2;
+        long[] sum = addMagnitudes(a, off, half, a, off + half, len - half, base);
+        long[] z0;
+        long[] z1;
+        long[] z2;
+        if (len >= parallelThreshold) {
+            List<long[]> squares = invokeAll(Arrays.<Supplier<long[]>>asList(
+                    () -> square(a, off, half, base, null),
+                    () -> square(sum, 0, sum.length, base, null),
+                    () -> square(a, off + half, len - half, base, null)));
+            z0 = squares.get(0);
+            z1 = squares.get(1);
+            z2 = squares.get(2);
         } else {
-            if (this.arr[0] == 0) {
-                this.isNegative = false;
+            z0 = square(a, off, half, base, null);
+            z1 = square(sum, 0, sum.length, base, null);
+            z2 = square(a, off + half, len - half, base, null);
+        }
+        subtractInPlace(z1, z0, base);
+        subtractInPlace(z1, z2, base);
+
+        long[] result = new long[2 * len];
+        addInPlace(result, 0, z0, z0.length, base);
+        addInPlace(result, half, z1, z1.length, base);
+        addInPlace(result, 2 * half, z2, z2.length, base);
+        return result;
+    }
+
+    /**
+     * Toom-Cook 3-way multiplication of operands of similar length. Both
+     * operands are split in 3 parts, evaluated at 0, 1, -1, -2 and infinity,
+     * multiplied pointwise with 5 third sized products and interpolated back
+     * (Bodrato's sequence).
+     */
+    private static long[] toomCook3(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base) {
+        int third = (Math.max(aLen, bLen) + 2) / 3;
+        Num a0 = fromDigits(a, aOff, aLen, 0, third, base);
+        Num a1 = fromDigits(a, aOff, aLen, third, third, base);
+        Num a2 = fromDigits(a, aOff, aLen, 2 * third, third, base);
+        Num b0 = fromDigits(b, bOff, bLen, 0, third, base);
+        Num b1 = fromDigits(b, bOff, bLen, third, third, base);
+        Num b2 = fromDigits(b, bOff, bLen, 2 * third, third, base);
+
+        // Evaluation
+        Num m = Num.add(a0, a2);
+        Num pOne = Num.add(m, a1);
+        Num pMinusOne = Num.subtract(m, a1);
+        Num pMinusTwo = Num.add(pMinusOne, a2);
+        pMinusTwo = Num.subtract(Num.add(pMinusTwo, pMinusTwo), a0);
+        m = Num.add(b0, b2);
+        Num qOne = Num.add(m, b1);
+        Num qMinusOne = Num.subtract(m, b1);
+        Num qMinusTwo = Num.add(qMinusOne, b2);
+        qMinusTwo = Num.subtract(Num.add(qMinusTwo, qMinusTwo), b0);
+
+        // Pointwise products
+        Num r0;
+        Num r1;
+        Num r2;
+        Num r3;
+        Num r4;
+        if (Math.max(aLen, bLen) >= parallelThreshold) {
+            Num p = pMinusTwo;
+            Num q = qMinusTwo;
+            List<Num> products = invokeAll(Arrays.<Supplier<Num>>asList(
+                    () -> Num.product(a0, b0),
+                    () -> Num.product(pOne, qOne),
+                    () -> Num.product(pMinusOne, qMinusOne),
+                    () -> Num.product(p, q),
+                    () -> Num.product(a2, b2)));
+            r0 = products.get(0);
+            r1 = products.get(1);
+            r2 = products.get(2);
+            r3 = products.get(3);
+            r4 = products.get(4);
+        } else {
+            r0 = Num.product(a0, b0);
+            r1 = Num.product(pOne, qOne);
+            r2 = Num.product(pMinusOne, qMinusOne);
+            r3 = Num.product(pMinusTwo, qMinusTwo);
+            r4 = Num.product(a2, b2);
+        }
+
+        // Interpolation
+        r3 = divideExact(Num.subtract(r3, r1), 3);
+        r1 = divideExact(Num.subtract(r1, r2), 2);
+        r2 = Num.subtract(r2, r0);
+        r3 = Num.add(divideExact(Num.subtract(r2, r3), 2), Num.add(r4, r4));
+        r2 = Num.subtract(Num.add(r2, r1), r4);
+        r1 = Num.subtract(r1, r3);
+
+        long[] result = new long[aLen + bLen];
+        addInPlace(result, 0, r0.arr, r0.len, base);
+        addInPlace(result, third, r1.arr, r1.len, base);
+        addInPlace(result, 2 * third, r2.arr, r2.len, base);
+        addInPlace(result, 3 * third, r3.arr, r3.len, base);
+        addInPlace(result, 4 * third, r4.arr, r4.len, base);
+        return result;
+    }
+
+    /**
+     * Creates a Num which takes ownership of the given digits
+     *
+     * @param digits digits of the magnitude, least significant first
+     * @param isNegative sign of the number
+     * @param base base of the digits
+     * @return Num storing the number
+     */
+    static Num fromDigits(long[] digits, boolean isNegative, long base) {
+        Num num = new Num(digits, isNegative);
+        num.base = base;
+        return num;
+    }
+
+    /**
+     * Creates a non negative Num from digits [from..from+count-1] of the
+     * magnitude stored at arr[off..off+len-1]. Digits beyond len are zero.
+     */
+    private static Num fromDigits(long[] arr, int off, int len, int from, int count, long base) {
+        count = Math.max(0, Math.min(count, len - from));
+        long[] digits = new long[Math.max(1, count)];
+        if (count > 0) {
+            System.arraycopy(arr, off + from, digits, 0, count);
+        }
+        Num num = new Num(digits, false);
+        num.base = base;
+        return num;
+    }
+
+    /**
+     * Multiplies a Num by base^count by prepending zero digits
+     */
+    private static Num shiftDigits(Num a, int count) {
+        long[] digits = new long[a.len + count];
+        System.arraycopy(a.arr, 0, digits, count, a.len);
+        Num result = new Num(digits, a.isNegative);
+        result.base = a.base;
+        return result;
+    }
+
+    /**
+     * Divides a Num by a small positive number when the division is known to
+     * leave no remainder. Sign of the Num is kept.
+     */
+    private static Num divideExact(Num a, long divisor) {
+        long[] quotient = new long[a.len];
+        divideBySmall(a.arr, a.len, divisor, a.base, quotient);
+        Num result = new Num(quotient, a.isNegative);
+        result.base = a.base;
+        result.clean();
+        return result;
+    }
+
+    /**
+     * @return number of digits of arr[off..off+len-1] without the leading
+     * zeros
+     */
+    static int significantLength(long[] arr, int off, int len) {
+        while (len > 0 && arr[off + len - 1] == 0) {
+            len--;
+        }
+        return len;
+    }
+
+    /**
+     * Adds two magnitudes
+     *
+     * @return array of max(aLen, bLen) + 1 digits storing the sum
+     */
+    private static long[] addMagnitudes(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base) {
+        long[] result = new long[Math.max(aLen, bLen) + 1];
+        System.arraycopy(a, aOff, result, 0, aLen);
+        addInPlace(result, 0, b, bOff, bLen, base);
+        return result;
+    }
+
+    /**
+     * Adds magnitude b[0..bLen-1] into result starting at digit off. Result
+     * must be big enough to hold the sum, leading zeros of b are ignored.
+     */
+    static void addInPlace(long[] result, int off, long[] b, int bLen, long base) {
+        addInPlace(result, off, b, 0, bLen, base);
+    }
+
+    /**
+     * Adds magnitude b[bOff..bOff+bLen-1] into result starting at digit off.
+     */
+    private static void addInPlace(long[] result, int off, long[] b, int bOff, int bLen, long base) {
+        bLen = significantLength(b, bOff, bLen);
+        long carry = 0;
+        int i = 0;
+        while (i < bLen) {
+            long total = result[off + i] + b[bOff + i] + carry;
+            if (total >= base) {
+                result[off + i] = total - base;
+                carry = 1;
+            } else {
+                result[off + i] = total;
+                carry = 0;
+            }
+            i++;
+        }
+        while (carry > 0) {
+            long total = result[off + i] + carry;
+            if (total >= base) {
+                result[off + i] = total - base;
+            } else {
+                result[off + i] = total;
+                carry = 0;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Subtracts magnitude b from magnitude a in place, assumes a is greater
+     * than or equal to b.
+     */
+    static void subtractInPlace(long[] a, long[] b, long base) {
+        int bLen = significantLength(b, 0, b.length);
+        long borrow = 0;
+        int i = 0;
+        while (i < bLen) {
+            long total = a[i] - b[i] - borrow;
+            if (total < 0) {
+                a[i] = total + base;
+                borrow = 1;
+            } else {
+                a[i] = total;
+                borrow = 0;
+            }
+            i++;
+        }
+        while (borrow > 0) {
+            if (a[i] == 0) {
+                a[i] = base - 1;
+            } else {
+                a[i]--;
+                borrow = 0;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Exponent bit lengths up to which each window size (1, 2, ...) is used
+     * by power and modPow
+     */
+    private static final int[] WINDOW_BITS = {7, 25, 81, 241, 673, 1793};
+
+    /**
+     * Power of a Num object
+     *
+     * @param a Num Object
+     * @param n long representing the power
+     * @return object which stores power of a to n
+     */
+    public static Num power(Num a, long n) {
+        if (n <= 0) {
+            return new Num("1", a.base);
+        }
+        if (n == 1) {
+            return a;
+        }
+        long base = a.base;
+        int aLen = significantLength(a.arr, 0, a.len);
+        if (aLen == 0) {
+            return new Num(0, base);
+        }
+        if (aLen == 1 && a.arr[0] == 1) {
+            // |a| = 1 for any n, the estimate below would count n bits
+            return new Num(a.isNegative && (n & 1) == 1 ? -1 : 1, base);
+        }
+        // a < (top + 1) * base^(aLen - 1), so a^n has at most this many digits
+        double digits = (double) n * (aLen - 1)
+                + Math.ceil(n * Math.log(a.arr[aLen - 1] + 1) / Math.log(base));
+        if (digits > Integer.MAX_VALUE - 16) {
+            throw new ArithmeticException("Power is too large");
+        }
+        int size = (int) digits + 2;
+
+        int bitLength = 64 - Long.numberOfLeadingZeros(n);
+        int window = 1;
+        while (window <= WINDOW_BITS.length && bitLength > WINDOW_BITS[window - 1]) {
+            window++;
+        }
+        // table[i] stores a^(2i+1)
+        long[][] table = new long[1 << (window - 1)][];
+        table[0] = Arrays.copyOf(a.arr, aLen);
+        if (table.length > 1) {
+            long[] sq = square(a.arr, 0, aLen, base, null);
+            for (int i = 1; i < table.length; i++) {
+                table[i] = multiply(table[i - 1], 0, table[i - 1].length, sq, 0, sq.length, base);
+            }
+        }
+
+        // Left to right sliding window; squares and products alternate
+        // between the two buffers
+        long[] result = null;
+        long[] spare = new long[size];
+        int i = bitLength - 1;
+        while (i >= 0) {
+            if ((n >>> i & 1) == 0) {
+                long[] next = square(result, 0, result.length, base, spare);
+                spare = next == spare ? result : spare;
+                result = next;
+                i--;
+                continue;
+            }
+            int j = Math.max(i - window + 1, 0);
+            while ((n >>> j & 1) == 0) {
+                j++;
+            }
+            int value = (int) (n >>> j & ((1L << (i - j + 1)) - 1));
+            long[] odd = table[value >> 1];
+            if (result == null) {
+                result = Arrays.copyOf(odd, size);
+            } else {
+                for (int l = i; l >= j; l--) {
+                    long[] next = square(result, 0, result.length, base, spare);
+                    spare = next == spare ? result : spare;
+                    result = next;
+                }
+                long[] next = multiply(result, 0, result.length, odd, 0, odd.length, base, spare);
+                spare = next == spare ? result : spare;
+                result = next;
+            }
+            i = j - 1;
+        }
+        return fromDigits(result, a.isNegative && (n & 1) == 1, base);
+    }
+
+    /**
+     * Modular exponentiation using Montgomery multiplication and sliding
+     * windows. Intermediate results never exceed the size of the modulus.
+     * Result is between 0 and modulus - 1, in the base of a.
+     *
+     * @param a Num Object
+     * @param exponent non negative exponent
+     * @param modulus positive modulus
+     * @return Num storing a to exponent mod modulus
+     */
+    public static Num modPow(Num a, Num exponent, Num modulus) {
+        int mLen = significantLength(modulus.arr, 0, modulus.len);
+        if (modulus.isNegative || mLen == 0 || exponent.isNegative) {
+            throw new ArithmeticException();
+        }
+        if (mLen == 1 && modulus.arr[0] == 1) {
+            return new Num(0, a.base);
+        }
+        Montgomery context = modulus.montgomery;
+        if (context == null) {
+            context = Montgomery.of(modulus);
+            modulus.montgomery = context;
+        }
+        Num m = modulus.base == context.base ? modulus : modulus.convertBase(context.base);
+        Num x = Num.mod(a.base == m.base ? a : a.convertBase(m.base), m);
+        if (x.isNegative) {
+            x = Num.add(x, m);
+        }
+        Num e = exponent.base == BINARY_BASE ? exponent : exponent.convertBase(BINARY_BASE);
+        int bitLength = bitLength(e);
+        int window = 1;
+        while (window <= WINDOW_BITS.length && bitLength > WINDOW_BITS[window - 1]) {
+            window++;
+        }
+
+        // table[i] stores x^(2i+1)
+        long[][] table = new long[1 << (window - 1)][];
+        table[0] = context.toResidue(x.arr, x.len);
+        if (table.length > 1) {
+            long[] square = context.square(table[0]);
+            for (int i = 1; i < table.length; i++) {
+                table[i] = context.multiply(table[i - 1], square);
+            }
+        }
+
+        long[] result = null;
+        int i = bitLength - 1;
+        while (i >= 0) {
+            if (!testBit(e, i)) {
+                if (result != null) {
+                    result = context.square(result);
+                }
+                i--;
+                continue;
+            }
+            int j = Math.max(i - window + 1, 0);
+            while (!testBit(e, j)) {
+                j++;
+            }
+            int value = 0;
+            for (int l = i; l >= j; l--) {
+                value = value << 1 | (testBit(e, l) ? 1 : 0);
+                if (result != null) {
+                    result = context.square(result);
+                }
+            }
+            result = result == null ? table[value >> 1] : context.multiply(result, table[value >> 1]);
+            i = j - 1;
+        }
+        if (result == null) {
+            result = context.one();
+        }
+        Num answer = fromDigits(context.fromResidue(result), false, m.base);
+        return answer.base == a.base ? answer : answer.convertBase(a.base);
+    }
+
+    /**
+     * @return number of bits of magnitude of a, which is in BINARY_BASE
+     */
+    private static int bitLength(Num a) {
+        int len = significantLength(a.arr, 0, a.len);
+        if (len == 0) {
+            return 0;
+        }
+        return (len - 1) * 31 + 64 - Long.numberOfLeadingZeros(a.arr[len - 1]);
+    }
+
+    /**
+     * @return bit i of magnitude of a, which is in BINARY_BASE
+     */
+    private static boolean testBit(Num a, int i) {
+        int digit = i / 31;
+        return digit < a.len && (a.arr[digit] >>> (i % 31) & 1) != 0;
+    }
+
+    /**
+     * Fibonacci number by fast doubling: from F(k) and F(k+1),
+     * F(2k) = F(k) * (2F(k+1) - F(k)) and F(2k+1) = F(k)^2 + F(k+1)^2
+     *
+     * @param n non negative index
+     * @return Num storing F(n), with F(0) = 0 and F(1) = 1
+     */
+    public static Num fibonacci(long n) {
+        if (n < 0) {
+            throw new ArithmeticException();
+        }
+        Num a = new Num(0);
+        Num b = new Num(1);
+        for (int i = 63 - Long.numberOfLeadingZeros(n); i >= 0; i--) {
+            Num c = Num.product(a, Num.subtract(Num.add(b, b), a));
+            Num d = Num.add(Num.product(a, a), Num.product(b, b));
+            if ((n >>> i & 1) == 0) {
+                a = c;
+                b = d;
+            } else {
+                a = d;
+                b = Num.add(c, d);
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Factorial using the odd part decomposition: n! is 2^(n - bitCount(n))
+     * times the product over i of the odd numbers in (n / 2^(i+1), n / 2^i]
+     * raised to the power i + 1. Products of odd numbers use a product tree.
+     *
+     * @param n non negative number
+     * @return Num storing n!
+     */
+    public static Num factorial(int n) {
+        if (n < 0) {
+            throw new ArithmeticException();
+        }
+        Num oddPart = new Num(1);
+        Num p = new Num(1);
+        for (int i = 30 - Integer.numberOfLeadingZeros(n); i >= 0; i--) {
+            long low = n >> (i + 1);
+            long high = n >> i;
+            int count = (int) ((high + 1) / 2 - (low + 1) / 2);
+            if (count > 0) {
+                long[] odd = new long[count];
+                long first = low + 1 | 1;
+                for (int j = 0; j < count; j++) {
+                    odd[j] = first + 2L * j;
+                }
+                p = Num.product(p, productTree(odd, count));
+            }
+            oddPart = Num.product(oddPart, p);
+        }
+        return oddPart.shiftLeft(n - Integer.bitCount(n));
+    }
+
+    /**
+     * Binomial coefficient from its prime factorization. The exponent of a
+     * prime p is the number of carries when adding k and n - k in base p
+     * (Kummer's theorem), and p to that exponent is never more than n.
+     *
+     * @param n non negative number
+     * @param k number of chosen elements
+     * @return Num storing n choose k, zero when k is not between 0 and n
+     */
+    public static Num binomial(int n, int k) {
+        if (n < 0) {
+            throw new ArithmeticException();
+        }
+        if (k < 0 || k > n) {
+            return new Num(0);
+        }
+        k = Math.min(k, n - k);
+        boolean[] composite = new boolean[n + 1];
+        long[] factors = new long[n + 1];
+        int count = 0;
+        for (int p = 2; p <= n; p++) {
+            if (composite[p]) {
+                continue;
+            }
+            for (long multiple = (long) p * p; multiple <= n; multiple += p) {
+                composite[(int) multiple] = true;
+            }
+            // Count the carries of k + (n - k) in base p
+            long power = 1;
+            int a = k;
+            int b = n - k;
+            int carry = 0;
+            while (a > 0 || b > 0 || carry > 0) {
+                carry = (a % p + b % p + carry) >= p ? 1 : 0;
+                if (carry == 1) {
+                    power *= p;
+                }
+                a /= p;
+                b /= p;
+            }
+            if (power > 1) {
+                factors[count++] = power;
+            }
+        }
+        return productTree(factors, count);
+    }
+
+    /**
+     * Product of factors[0..count-1], each less than 2^31. Factors are first
+     * packed into longs and then multiplied in a balanced tree so that both
+     * operands of each product have similar size.
+     */
+    private static Num productTree(long[] factors, int count) {
+        int packed = 0;
+        long current = 1;
+        for (int i = 0; i < count; i++) {
+            if (current > Long.MAX_VALUE / factors[i]) {
+                factors[packed++] = current;
+                current = 1;
+            }
+            current *= factors[i];
+        }
+        factors[packed++] = current;
+        return productTree(factors, 0, packed);
+    }
+
+    /**
+     * Product of factors[from..to-1]
+     */
+    private static Num productTree(long[] factors, int from, int to) {
+        if (to - from == 1) {
+            return new Num(factors[from]);
+        }
+        int mid = (from + to) >>> 1;
+        return Num.product(productTree(factors, from, mid), productTree(factors, mid, to));
+    }
+
+    /**
+     * Division of 2 Num using long division. Quotient is truncated towards
+     * zero.
+     *
+     * @param a First Num Object
+     * @param b Second Num Object
+     * @return object that stores division of a and b
+     */
+    public static Num divide(Num a, Num b) {
+        return divideAndRemainder(a, b)[0];
+    }
+
+    /**
+     * Division of Num by a long in one pass over the digits. Quotient is
+     * truncated towards zero.
+     *
+     * @param a Num Object
+     * @param b divisor
+     * @return object that stores division of a and b
+     */
+    public static Num divide(Num a, long b) {
+        if (b == 0) {
+            throw new ArithmeticException();
+        }
+        if (b == Long.MIN_VALUE || Math.abs(b) > Long.MAX_VALUE / a.base) {
+            return Num.divide(a, new Num(b, a.base));
+        }
+        long[] quotient = new long[a.len];
+        divideBySmall(a.arr, a.len, Math.abs(b), a.base, quotient);
+        Num result = new Num(quotient, a.isNegative ^ (b < 0));
+        result.base = a.base;
+        result.clean();
+        return result;
+    }
+
+    /**
+     * Mod of 2 Num. Result has the sign of a.
+     *
+     * @param a First Num Object
+     * @param b Second Num Object
+     * @return Num storing mod of a and b
+     */
+    public static Num mod(Num a, Num b) {
+        if (b.isNegative) {
+            throw new ArithmeticException();
+        }
+        return divideAndRemainder(a, b)[1];
+    }
+
+    /**
+     * Quotient and remainder of 2 Num in one pass of long division (Knuth's
+     * Algorithm D). Quotient is truncated towards zero, remainder has the
+     * sign of a.
+     *
+     * @param a First Num Object
+     * @param b Second Num Object
+     * @return array storing quotient at index 0 and remainder at index 1
+     */
+    public static Num[] divideAndRemainder(Num a, Num b) {
+        if (a.base != b.base) {
+            b = b.convertBase(a.base);
+        }
+        int bLen = significantLength(b.arr, 0, b.len);
+        if (bLen == 0) {
+            throw new ArithmeticException();
+        }
+        long[][] division = divideMagnitudes(a.arr, a.len, b.arr, bLen, a.base);
+        Num quotient = new Num(division[0], a.isNegative ^ b.isNegative);
+        quotient.base = a.base;
+        quotient.clean();
+        Num remainder = new Num(division[1], a.isNegative);
+        remainder.base = a.base;
+        remainder.clean();
+        return new Num[]{quotient, remainder};
+    }
+
+    /**
+     * Greatest common divisor of 2 Num. Binary GCD once both numbers fit in
+     * a long, Lehmer's algorithm before that.
+     *
+     * @param a First Num Object
+     * @param b Second Num Object
+     * @return non negative Num storing gcd(a, b), in the base of a
+     */
+    public static Num gcd(Num a, Num b) {
+        if (a.base != b.base) {
+            b = b.convertBase(a.base);
+        }
+        long base = a.base;
+        long[] u = a.arr;
+        long[] v = b.arr;
+        int uLen = significantLength(u, 0, a.len);
+        int vLen = significantLength(v, 0, b.len);
+        if (compareMagnitudes(u, uLen, v, vLen) < 0) {
+            long[] t = u;
+            u = v;
+            v = t;
+            int tLen = uLen;
+            uLen = vLen;
+            vLen = tLen;
+        }
+        // Both steps keep u >= v
+        while (vLen > 0 && longValue(u, uLen, base) < 0) {
+            long[] cofactors = lehmerCofactors(u, uLen, v, vLen, base);
+            if (cofactors == null) {
+                long[] r = divideMagnitudes(u, uLen, v, vLen, base)[1];
+                u = v;
+                uLen = vLen;
+                v = r;
+            } else {
+                long[] next = combine(u, uLen, v, vLen, cofactors[0], cofactors[1], base);
+                v = combine(u, uLen, v, vLen, cofactors[2], cofactors[3], base);
+                u = next;
+                uLen = significantLength(u, 0, u.length);
+            }
+            vLen = significantLength(v, 0, v.length);
+        }
+        if (vLen == 0) {
+            Num g = new Num(Arrays.copyOf(u, Math.max(1, uLen)), false);
+            g.base = base;
+            g.clean();
+            return g;
+        }
+        return new Num(binaryGcd(longValue(u, uLen, base), longValue(v, vLen, base)), base);
+    }
+
+    /**
+     * Extended Euclidean algorithm, using Lehmer's steps for large numbers
+     *
+     * @param a First Num Object
+     * @param b Second Num Object
+     * @return array storing g = gcd(a, b) at index 0 and x, y with
+     * a * x + b * y = g at indexes 1 and 2, all in the base of a
+     */
+    public static Num[] extendedGcd(Num a, Num b) {
+        if (a.base != b.base) {
+            b = b.convertBase(a.base);
+        }
+        long base = a.base;
+        // Invariants: u = su * |a| (mod |b|), v = sv * |a| (mod |b|)
+        Num u = a.isNegative ? Num.subtract(new Num(0, base), a) : a;
+        Num v = b.isNegative ? Num.subtract(new Num(0, base), b) : b;
+        Num su = new Num(1, base);
+        Num sv = new Num(0, base);
+        while (!v.isZero()) {
+            long[] cofactors = u.len >= 2 && u.compareTo(v) >= 0
+                    ? lehmerCofactors(u.arr, u.len, v.arr, v.len, base) : null;
+            if (cofactors == null) {
+                Num[] division = divideAndRemainder(u, v);
+                Num s = Num.subtract(su, Num.product(division[0], sv));
+                u = v;
+                v = division[1];
+                su = sv;
+                sv = s;
+            } else {
+                Num nu = fromDigits(combine(u.arr, u.len, v.arr, v.len, cofactors[0], cofactors[1], base), false, base);
+                Num nv = fromDigits(combine(u.arr, u.len, v.arr, v.len, cofactors[2], cofactors[3], base), false, base);
+                Num nsu = Num.add(Num.product(su, new Num(cofactors[0], base)), Num.product(sv, new Num(cofactors[1], base)));
+                Num nsv = Num.add(Num.product(su, new Num(cofactors[2], base)), Num.product(sv, new Num(cofactors[3], base)));
+                u = nu;
+                v = nv;
+                su = nsu;
+                sv = nsv;
+            }
+        }
+        Num x = a.isNegative ? Num.subtract(new Num(0, base), su) : su;
+        Num y;
+        if (b.isZero()) {
+            y = new Num(0, base);
+        } else {
+            y = exactDivide(Num.subtract(u, Num.product(a, x)), b);
+        }
+        return new Num[]{u, x, y};
+    }
+
+    /**
+     * Inverse of a modulo m
+     *
+     * @param a Num Object
+     * @param m positive modulus
+     * @return Num x between 0 and m - 1 with a * x = 1 (mod m)
+     * @throws ArithmeticException if a is not invertible modulo m
+     */
+    public static Num modInverse(Num a, Num m) {
+        if (m.isNegative || m.isZero()) {
+            throw new ArithmeticException();
+        }
+        Num[] e = extendedGcd(a, m);
+        if (e[0].len != 1 || e[0].arr[0] != 1) {
+            throw new ArithmeticException("Not invertible");
+        }
+        Num x = Num.mod(e[1], m.base == a.base ? m : m.convertBase(a.base));
+        if (x.isNegative) {
+            x = Num.add(x, m);
+        }
+        return x;
+    }
+
+    /**
+     * Division of 2 Num known to leave no remainder, e.g. by a gcd. When the
+     * lowest non zero digit of b is invertible modulo the base the quotient
+     * is computed from its lowest digit up (Jebelean's exact division), which
+     * only needs the low half of every row of long division. Sizes for which
+     * divide uses Newton's reciprocal are left to divide.
+     *
+     * @param a First Num Object, multiple of b
+     * @param b Second Num Object
+     * @return object that stores a / b
+     */
+    public static Num exactDivide(Num a, Num b) {
+        if (a.base != b.base) {
+            b = b.convertBase(a.base);
+        }
+        long base = a.base;
+        int bLen = significantLength(b.arr, 0, b.len);
+        if (bLen == 0) {
+            throw new ArithmeticException();
+        }
+        // Low zero digits of b are also low zero digits of a
+        int zeros = 0;
+        while (b.arr[zeros] == 0) {
+            zeros++;
+        }
+        int aLen = significantLength(a.arr, 0, a.len) - zeros;
+        bLen -= zeros;
+        long inverse = inverse(b.arr[zeros], base);
+        if (inverse == 0 || aLen < bLen
+                || (bLen >= newtonDivisionThreshold && aLen - bLen >= newtonDivisionThreshold)) {
+            return divide(a, b);
+        }
+        int qLen = aLen - bLen + 1;
+        long[] r = Arrays.copyOfRange(a.arr, zeros, zeros + qLen);
+        long[] q = new long[qLen];
+        for (int i = 0; i < qLen; i++) {
+            long digit = r[i] * inverse % base;
+            q[i] = digit;
+            // r -= digit * b * base^i, only the digits below qLen are needed
+            long borrow = 0;
+            int end = Math.min(qLen, i + bLen);
+            for (int j = i; j < end; j++) {
+                long total = digit * b.arr[zeros + j - i] + borrow;
+                long low = total % base;
+                borrow = total / base;
+                if (r[j] < low) {
+                    r[j] += base - low;
+                    borrow++;
+                } else {
+                    r[j] -= low;
+                }
+            }
+            for (int j = end; borrow > 0 && j < qLen; j++) {
+                if (r[j] < borrow) {
+                    r[j] += base - borrow;
+                    borrow = 1;
+                } else {
+                    r[j] -= borrow;
+                    borrow = 0;
+                }
+            }
+        }
+        Num result = new Num(q, a.isNegative ^ b.isNegative);
+        result.base = base;
+        result.clean();
+        return result;
+    }
+
+    /**
+     * @return x^-1 mod base by the extended Euclidean algorithm, or 0 when x
+     * and base are not coprime
+     */
+    static long inverse(long x, long base) {
+        long r0 = base;
+        long r1 = x;
+        long s0 = 0;
+        long s1 = 1;
+        while (r1 != 0) {
+            long q = r0 / r1;
+            long r = r0 - q * r1;
+            r0 = r1;
+            r1 = r;
+            long s = s0 - q * s1;
+            s0 = s1;
+            s1 = s;
+        }
+        if (r0 != 1) {
+            return 0;
+        }
+        return s0 < 0 ? s0 + base : s0;
+    }
+
+    /**
+     * Lehmer's step (Knuth's Algorithm L) for u >= v: runs Euclid's
+     * algorithm on the two leading digits of u and the digits of v at the
+     * same positions, as long as the quotients are those of u and v.
+     *
+     * @return cofactors {A, B, C, D}, all less than base in absolute value,
+     * such that A*u + B*v and C*u + D*v are two consecutive remainders of
+     * Euclid's algorithm on u and v, or null if not even one quotient is
+     * known
+     */
+    private static long[] lehmerCofactors(long[] u, int uLen, long[] v, int vLen, long base) {
+        int n = uLen;
+        if (n < 2 || vLen < n - 1) {
+            return null;
+        }
+        // Both are below base^2, which fits in a long
+        long x = u[n - 1] * base + u[n - 2];
+        long y = (vLen == n ? v[n - 1] : 0) * base + v[n - 2];
+        long a = 1;
+        long b = 0;
+        long c = 0;
+        long d = 1;
+        while (y + c != 0 && y + d != 0) {
+            long q = (x + a) / (y + c);
+            if (q != (x + b) / (y + d) || q >= base) {
+                break;
+            }
+            long nc = a - q * c;
+            long nd = b - q * d;
+            if (Math.abs(nc) >= base || Math.abs(nd) >= base) {
+                break;
+            }
+            a = c;
+            b = d;
+            c = nc;
+            d = nd;
+            long t = x - q * y;
+            x = y;
+            y = t;
+        }
+        return b == 0 ? null : new long[]{a, b, c, d};
+    }
+
+    /**
+     * @return digits of s * u + t * v, which must be non negative, for
+     * cofactors s and t of opposite signs (or zero) from lehmerCofactors
+     */
+    private static long[] combine(long[] u, int uLen, long[] v, int vLen, long s, long t, long base) {
+        int n = Math.max(uLen, vLen) + 1;
+        long[] positive = new long[n];
+        long[] negative = new long[n];
+        if (t <= 0) {
+            positive[uLen] = multiplyBySmall(u, uLen, s, base, positive);
+            negative[vLen] = multiplyBySmall(v, vLen, -t, base, negative);
+        } else {
+            positive[vLen] = multiplyBySmall(v, vLen, t, base, positive);
+            negative[uLen] = multiplyBySmall(u, uLen, -s, base, negative);
+        }
+        subtractInPlace(positive, negative, base);
+        return positive;
+    }
+
+    /**
+     * Compares magnitudes a[0..aLen-1] and b[0..bLen-1] without leading
+     * zeros
+     */
+    private static int compareMagnitudes(long[] a, int aLen, long[] b, int bLen) {
+        if (aLen != bLen) {
+            return aLen < bLen ? -1 : 1;
+        }
+        for (int i = aLen - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return value of magnitude x[0..len-1] as a long, or -1 if it does not
+     * fit
+     */
+    private static long longValue(long[] x, int len, long base) {
+        long value = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            if (value > (Long.MAX_VALUE - x[i]) / base) {
+                return -1;
+            }
+            value = value * base + x[i];
+        }
+        return value;
+    }
+
+    /**
+     * Stein's binary GCD of non negative longs
+     */
+    private static long binaryGcd(long a, long b) {
+        if (a == 0 || b == 0) {
+            return a | b;
+        }
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
             }
+            b -= a;
         }
+        return a << shift;
     }
 
     /**
-     * Evaluate an expression in postfix and return resulting number Each string
-     * is one of: "*", "+", "-", "/", "%", "^", "0", or a number: [1-9][0-9]*.
-     * There is no unary minus operator.
+     * @return true if the Num is zero
+     */
+    private boolean isZero() {
+        return significantLength(arr, 0, len) == 0;
+    }
+
+    /**
+     * Division of magnitude u by magnitude v, whose most significant digit
+     * must be non zero. Long division for small operands, Newton's reciprocal
+     * for large ones (see newtonDivisionThreshold).
      *
-     * @param expr expression to evaluate
-     * @return Num storing the evaluation
+     * @return array storing digits of quotient at index 0 and digits of
+     * remainder at index 1
      */
-    public static Num evaluatePostfix(String[] expr) {
-        Stack<Num> operands = new Stack<>();
+    static long[][] divideMagnitudes(long[] u, int uLen, long[] v, int vLen, long base) {
+        uLen = Math.max(1, significantLength(u, 0, uLen));
+        if (uLen < vLen) {
+            return new long[][]{new long[1], Arrays.copyOf(u, uLen)};
+        }
+        if (vLen >= newtonDivisionThreshold && uLen - vLen >= newtonDivisionThreshold) {
+            return divideNewton(u, uLen, v, vLen, base);
+        }
+        return divideKnuth(u, uLen, v, vLen, base);
+    }
+
+    /**
+     * Long division (Knuth's Algorithm D) of magnitude u by magnitude v, with
+     * no leading zeros in either of them and u not shorter than v.
+     *
+     * @return array storing digits of quotient at index 0 and digits of
+     * remainder at index 1
+     */
+    private static long[][] divideKnuth(long[] u, int uLen, long[] v, int vLen, long base) {
+        if (vLen == 1) {
+            long[] quotient = new long[uLen];
+            long remainder = divideBySmall(u, uLen, v[0], base, quotient);
+            return new long[][]{quotient, new long[]{remainder}};
+        }
 
-        for (String e : expr) {
-            Token t = tokenizer(e.trim());
+        // D1: normalize so that leading digit of divisor is at least base / 2
+        long d = base / (v[vLen - 1] + 1);
+        long[] un = new long[uLen + 1];
+        long[] vn = new long[vLen];
+        un[uLen] = multiplyBySmall(u, uLen, d, base, un);
+        multiplyBySmall(v, vLen, d, base, vn);
 
-            switch (t) {
-                case NUMBER:
-                    operands.push(new Num(e));
+        long[] quotient = new long[uLen - vLen + 1];
+        long vTop = vn[vLen - 1];
+        long vNext = vn[vLen - 2];
+        for (int j = uLen - vLen; j >= 0; j--) {
+            // D3: estimate quotient digit from the leading digits
+            long num = un[j + vLen] * base + un[j + vLen - 1];
+            long qHat = num / vTop;
+            long rHat = num % vTop;
+            while (qHat >= base || qHat * vNext > rHat * base + un[j + vLen - 2]) {
+                qHat--;
+                rHat += vTop;
+                if (rHat >= base) {
                     break;
-                case OPERATOR:
-                    Num b = operands.pop();
-                    Num a = operands.pop();
-                    Num result;
-
-                    if (e.equals("+")) {
-                        result = Num.add(a, b);
-                    } else if (e.equals("-")) {
-                        result = Num.subtract(a, b);
-                    } else if (e.equals("*")) {
-                        result = Num.product(a, b);
-                    } else if (e.equals("/")) {
-                        result = Num.divide(a, b);
-                    } else if (e.equals("%")) {
-                        result = Num.mod(a, b);
+                }
+            }
+
+            // D4: multiply and subtract
+            long carry = 0;
+            long borrow = 0;
+            for (int i = 0; i < vLen; i++) {
+                long p = qHat * vn[i] + carry;
+                carry = p / base;
+                long t = un[i + j] - p % base - borrow;
+                if (t < 0) {
+                    un[i + j] = t + base;
+                    borrow = 1;
+                } else {
+                    un[i + j] = t;
+                    borrow = 0;
+                }
+            }
+            long t = un[j + vLen] - carry - borrow;
+
+            // D6: estimate was one too large, add divisor back
+            if (t < 0) {
+                qHat--;
+                carry = 0;
+                for (int i = 0; i < vLen; i++) {
+                    long total = un[i + j] + vn[i] + carry;
+                    if (total >= base) {
+                        un[i + j] = total - base;
+                        carry = 1;
                     } else {
-                        long b_long = Long.parseLong(b.toString());
-                        result = Num.power(a, b_long);
+                        un[i + j] = total;
+                        carry = 0;
                     }
-                    operands.push(result);
-                    break;
-                default:
-                    break;
+                }
+                t += carry;
             }
+            un[j + vLen] = t;
+            quotient[j] = qHat;
         }
-        if (operands.isEmpty()) {
-            return new Num(0);
+
+        // D8: unnormalize remainder
+        long[] remainder = new long[vLen];
+        divideBySmall(un, vLen, d, base, remainder);
+        return new long[][]{quotient, remainder};
+    }
+
+    /**
+     * Divides magnitude u by magnitude v using the reciprocal of v, so the
+     * cost is a few multiplications instead of quadratic long division.
+     */
+    private static long[][] divideNewton(long[] u, int uLen, long[] v, int vLen, long base) {
+        Num dividend = fromDigits(u, 0, uLen, 0, uLen, base);
+        Num divisor = fromDigits(v, 0, vLen, 0, vLen, base);
+        Num reciprocal = reciprocal(divisor, uLen);
+        // Estimate is at most a couple less than the quotient
+        Num estimate = Num.product(dividend, reciprocal);
+        Num quotient = fromDigits(estimate.arr, 0, estimate.len, uLen, estimate.len, base);
+        Num remainder = Num.subtract(dividend, Num.product(quotient, divisor));
+        Num one = new Num(1, base);
+        while (remainder.compareTo(divisor) >= 0) {
+            quotient = Num.add(quotient, one);
+            remainder = Num.subtract(remainder, divisor);
         }
-        System.out.println("Evaluated to: " + Arrays.toString(operands.peek().arr));
-        return operands.pop();
+        return new long[][]{quotient.arr, remainder.arr};
     }
 
     /**
-     * Evaluate an expression in infix and return resulting number Each string
-     * is one of: "*", "+", "-", "/", "%", "^", "0", or a number: [1-9][0-9]*.
-     * There is no unary minus operator.
+     * Computes floor(base^k / v) for magnitude v[0..vLen-1], whose most
+     * significant digit must be non zero, see reciprocal below
      *
-     * @param expr expression to evaluate
-     * @return Num storing the evaluation
-     * @throws Exception bad operands
+     * @return digits of the reciprocal
      */
-    public static Num evaluateInfix(String[] expr) throws Exception {
-        List<String> output = new ArrayList<>();
-        Stack<String> operators = new Stack<>();
-
-        Map<String, Rule> precedence = new HashMap<>();
-        precedence.put("+", new Rule(11, Associativity.LEFT));
-        precedence.put("-", new Rule(11, Associativity.LEFT));
-        precedence.put("*", new Rule(12, Associativity.LEFT));
-        precedence.put("/", new Rule(12, Associativity.LEFT));
-        precedence.put("%", new Rule(12, Associativity.LEFT));
-        precedence.put("^", new Rule(14, Associativity.RIGHT));
-
-        for (String e : expr) {
-            Token t = tokenizer(e.trim());
-
-            switch (t) {
-                case NUMBER:
-                    output.add(e);
-                    break;
-                case OPERATOR:
-                    if (!precedence.containsKey(e)) {
-                        throw new Exception("Operation not supported yet.");
-                    }
+    static long[] reciprocal(long[] v, int vLen, int k, long base) {
+        Num r = reciprocal(fromDigits(v, 0, vLen, 0, vLen, base), k);
+        return Arrays.copyOf(r.arr, r.len);
+    }
 
-                    Rule e_rule = precedence.get(e);
-                    Rule top_rule;
-                    while (!operators.empty() && !operators.peek().equals("(")) {
-                        top_rule = precedence.get(operators.peek());
-                        if ((e_rule.precedence < top_rule.precedence)
-                                || ((e_rule.precedence == top_rule.precedence) && (top_rule.associativity == Associativity.LEFT))) {
-                            output.add(operators.pop());
-                        } else {
-                            break;
-                        }
-                    }
-                    operators.push(e);
-                    break;
-                case OPEN:
-                    operators.push("(");
-                    break;
-                case CLOSE:
-                    while (!operators.empty() && !operators.peek().equals("(")) {
-                        output.add(operators.pop());
-                    }
-                    if (operators.empty()) {
-                        throw new Exception("Bad expression");
-                    }
-                    operators.pop();
-                    break;
-                case ERROR:
-                default:
-                    throw new Exception("Invalid token in expression");
-            }
+    /**
+     * Computes floor(base^k / v) for a positive v of at most k digits with
+     * Newton's iteration r = r + r * (base^k - v * r) / base^k. The starting
+     * value is the reciprocal of the leading digits of v to half the
+     * precision, which one iteration brings to full precision.
+     */
+    private static Num reciprocal(Num v, int k) {
+        long base = v.base;
+        int precision = k - v.len;
+        Num power = shiftDigits(new Num(1, base), k);
+        if (precision < newtonDivisionThreshold) {
+            long[][] division = divideKnuth(power.arr, power.len, v.arr, v.len, base);
+            return fromDigits(division[0], 0, division[0].length, 0, division[0].length, base);
+        }
+
+        int half = precision / 2 + 1;
+        int dropped = Math.max(0, v.len - half - 2);
+        Num leading = fromDigits(v.arr, 0, v.len, dropped, v.len, base);
+        Num estimate = shiftDigits(reciprocal(leading, leading.len + half), precision - half);
+
+        Num error = Num.subtract(power, Num.product(v, estimate));
+        Num correction = Num.product(estimate, error);
+        Num scaled = fromDigits(correction.arr, 0, correction.len, k, correction.len, base);
+        scaled.isNegative = correction.isNegative;
+        scaled.clean();
+        estimate = Num.add(estimate, scaled);
+
+        // Newton's step leaves the estimate a few units away at most
+        Num one = new Num(1, base);
+        Num remainder = Num.subtract(power, Num.product(v, estimate));
+        while (remainder.isNegative) {
+            estimate = Num.subtract(estimate, one);
+            remainder = Num.add(remainder, v);
+        }
+        while (remainder.compareTo(v) >= 0) {
+            estimate = Num.add(estimate, one);
+            remainder = Num.subtract(remainder, v);
+        }
+        return estimate;
+    }
+
+    /**
+     * Multiplies magnitude a[0..len-1] by a small number, storing digits in
+     * result[0..len-1]
+     *
+     * @return the final carry
+     */
+    private static long multiplyBySmall(long[] a, int len, long m, long base, long[] result) {
+        long carry = 0;
+        for (int i = 0; i < len; i++) {
+            long total = a[i] * m + carry;
+            result[i] = total % base;
+            carry = total / base;
+        }
+        return carry;
+    }
+
+    /**
+     * Divides magnitude a[0..len-1] by a single digit, storing digits in
+     * quotient[0..len-1]
+     *
+     * @return the remainder
+     */
+    private static long divideBySmall(long[] a, int len, long divisor, long base, long[] quotient) {
+        long remainder = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            long current = remainder * base + a[i];
+            quotient[i] = current / divisor;
+            remainder = current % divisor;
+        }
+        return remainder;
+    }
+
+    /**
+     * Square root of Num using Newton's iteration, truncated to an integer
+     *
+     * @param a Num Object
+     * @return Num storing square root of a
+     */
+    public static Num squareRoot(Num a) {
+        if (a.isNegative) {
+            throw new ArithmeticException();
+        }
+        return nthRoot(a, 2);
+    }
+
+    /**
+     * N-th root of Num using Newton's iteration, truncated to an integer.
+     * Negative numbers only have odd roots.
+     *
+     * @param a Num Object
+     * @param n degree of the root
+     * @return Num storing n-th root of a
+     */
+    public static Num nthRoot(Num a, int n) {
+        if (n <= 0 || (a.isNegative && n % 2 == 0)) {
+            throw new ArithmeticException();
+        }
+        Num magnitude = new Num(a.arr, false);
+        magnitude.base = a.base;
+        if (n == 1) {
+            return a;
+        }
+        Num root = rootOfMagnitude(magnitude, n);
+        root.isNegative = a.isNegative;
+        root.clean();
+        return root;
+    }
+
+    /**
+     * N-th root of a non negative Num. A root which fits in a long is
+     * estimated in floating point from the leading digits. A larger one comes
+     * from the root of the leading half of the digits, which is already
+     * correct to half the digits. Either way the estimate is above the root
+     * by a relative error far below 1 / n, so Newton's iteration only needs
+     * a couple of steps on top of it.
+     */
+    private static Num rootOfMagnitude(Num a, int n) {
+        long base = a.base;
+        int len = significantLength(a.arr, 0, a.len);
+        if (len == 0) {
+            return new Num(0, base);
+        }
+        // log2(a) from the leading digits filling a double, to a relative
+        // error near 2^-50 whatever the base
+        int top = 0;
+        double leading = 0;
+        while (top < len && leading < 0x1p53) {
+            top++;
+            leading = leading * base + a.arr[len - top];
+        }
+        double log2 = (Math.log(leading) + (len - top) * Math.log(base)) / Math.log(2);
+        if (log2 < n * (1 - 1e-9)) {
+            // a < 2^n, so the root is 1
+            return new Num(1, base);
+        }
+
+        Num estimate;
+        if (log2 / n < 62) {
+            estimate = new Num((long) (Math.pow(2, log2 / n) * (1 + 1e-9)) + 2, base);
+        } else {
+            // The root has more than 61 bits, so a has more than 1.9 * n
+            // digits and the leading part below is not empty
+            int shift = Math.max(1, len / (2 * n));
+            Num high = fromDigits(a.arr, 0, len, n * shift, len, base);
+            Num highRoot = Num.add(rootOfMagnitude(high, n), new Num(1, base));
+            estimate = shiftDigits(highRoot, shift);
         }
 
-        while (!operators.empty()) {
-            output.add(operators.pop());
+        // Newton's iteration x = ((n - 1) * x + a / x^(n - 1)) / n never goes
+        // below the root, so x is the root as soon as x^n <= a
+        Num degree = new Num(n, base);
+        Num degreeLess = new Num(n - 1, base);
+        while (Num.power(estimate, n).compareTo(a) > 0) {
+            estimate = Num.divide(Num.add(Num.product(degreeLess, estimate),
+                    Num.divide(a, Num.power(estimate, n - 1))), degree);
         }
+        return estimate;
+    }
 
-        expr = new String[output.size()];
-        int index = 0;
-        for (String o : output) {
-            expr[index++] = o;
+    /**
+     * Compares 2 Num objects. Sign is ignored, only magnitude is compared
+     *
+     * @param other Num object to be compared with current Num
+     * @return +1 if current num is greater than other num, 0 if equal and -1 if
+     * other is bigger
+     */
+    @Override
+    public int compareTo(Num other) {
+        if (other.base != this.base) {
+            other = other.convertBase(this.base);
+        }
+        if (this.len > other.len) {
+            return 1;
+        } else if (this.len < other.len) {
+            return -1;
+        } else {
+            for (int i = this.len - 1; i >= 0; i--) {
+                if (this.arr[i] == other.arr[i]) {
+                    continue;
+                }
+                if (this.arr[i] > other.arr[i]) {
+                    return 1;
+                } else {
+                    return -1;
+                }
+            }
+            return 0;
         }
-        System.out.println("RPN: " + Arrays.toString(expr));
-        return evaluatePostfix(expr);
     }
 
     /**
-     * Tokens that can be used to distinguish various symbols of expression
+     * Prints the array of Num
      */
-    private enum Token {
-        NUMBER, OPERATOR, OPEN, CLOSE, ERROR
-    };
+    public void printList() {
+        System.out.println(this.base + ": " + Arrays.toString(this.arr));
+    }
 
     /**
-     * Associativity of operator
+     * Converts current number into base 10
+     *
+     * @return String containing current number in base 10
      */
-    private enum Associativity {
-        LEFT, RIGHT
-    };
+    @Override
+    public String toString() {
+        long[] decimal = RadixConversion.convert(arr, len, base, DECIMAL_BASE);
+        int length = Math.max(1, significantLength(decimal, 0, decimal.length));
+        StringBuilder sb = new StringBuilder(length * DECIMAL_DIGITS + 1);
+        if (isNegative) {
+            sb.append('-');
+        }
+        sb.append(decimal[length - 1]);
+        for (int i = length - 2; i >= 0; i--) {
+            String chunk = Long.toString(decimal[i]);
+            for (int j = chunk.length(); j < DECIMAL_DIGITS; j++) {
+                sb.append('0');
+            }
+            sb.append(chunk);
+        }
+        return sb.toString();
+    }
 
     /**
-     * Returns appropriate tokens from string
+     * Writes current number in base 10 to out, in chunks, most significant
+     * digits first. Unlike toString the whole string is never built, and the
+     * first digits are written before the rest is converted.
      *
-     * @param s String that is to be evaluated
-     * @return Token
+     * @param out where to write the digits, e.g. a Writer
+     * @throws IOException if out fails
      */
-    private static Token tokenizer(String s) {
-        if (s.matches("\\d+")) {
-            return Token.NUMBER;
+    public void writeDecimal(Appendable out) throws IOException {
+        if (isNegative) {
+            out.append('-');
         }
-        if (s.equals("(")) {
-            return Token.OPEN;
+        RadixConversion.writeChunks(arr, len, base, DECIMAL_BASE, DECIMAL_DIGITS, out);
+    }
+
+    /**
+     * Writes current number in base 10 to out as ASCII, see writeDecimal.
+     * The stream is flushed but not closed.
+     *
+     * @param out stream to write the digits to
+     * @throws IOException if out fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.US_ASCII);
+        writeDecimal(writer);
+        writer.flush();
+    }
+
+    /**
+     * @return Base of current Num
+     */
+    public long base() {
+        return base;
+    }
+
+    /**
+     * Converts number equal to "this" number, in base=newBase
+     *
+     * @param _newBase value of new base
+     * @return Num equal to current number in _newBase
+     */
+    public Num convertBase(int _newBase) {
+        return convertBase((long) _newBase);
+    }
+
+    /**
+     * Converts number equal to "this" number, in base=newBase. Accepts bases
+     * up to MAX_BASE, including BINARY_BASE. Digits are converted directly
+     * (see RadixConversion) and the result is cached on both numbers, through
+     * soft references which the collector clears under memory pressure.
+     *
+     * @param _newBase value of new base
+     * @return Num equal to current number in _newBase
+     */
+    public Num convertBase(long _newBase) {
+        if (_newBase < 2 || _newBase > MAX_BASE) {
+            throw new IllegalArgumentException("Base must be between 2 and " + MAX_BASE);
         }
-        if (s.equals(")")) {
-            return Token.CLOSE;
+        SoftReference<Num> ref = converted;
+        Num cached = ref == null ? null : ref.get();
+        if (cached != null && cached.base == _newBase && cached.isNegative == isNegative) {
+            return cached;
         }
+        Num result = new Num(RadixConversion.convert(arr, len, base, _newBase), isNegative);
+        result.base = _newBase;
+        result.clean();
+        result.converted = new SoftReference<>(this);
+        converted = new SoftReference<>(result);
+        return result;
+    }
+
+    /**
+     * Divides the Num by 2
+     *
+     * @return Num that stores half the value
+     */
+    public Num by2() {
+        return shiftRight(1);
+    }
 
-        String[] operators = {"+", "-", "*", "/", "%", "^"};
-        for (String op : operators) {
-            if (s.equals(op)) {
-                return Token.OPERATOR;
+    /**
+     * Multiplies the Num by 2^n, one pass over the digits for every
+     * SHIFT_STEP bits
+     *
+     * @param n number of bits to shift by, negative shifts right
+     * @return Num that stores this * 2^n
+     */
+    public Num shiftLeft(int n) {
+        if (n < 0) {
+            return shiftRight(-n);
+        }
+        if (isBinary(base)) {
+            return shiftLeftBinary(n);
+        }
+        if (n > SHIFT_PASSES * SHIFT_STEP) {
+            return Num.product(this, Num.power(new Num(2, base), n));
+        }
+        int extra = (int) Math.ceil(n * Math.log(2) / Math.log(base)) + 2;
+        long[] digits = Arrays.copyOf(arr, len + extra);
+        int length = len;
+        while (n > 0) {
+            int step = Math.min(n, SHIFT_STEP);
+            long carry = 0;
+            for (int i = 0; i < length; i++) {
+                long total = (digits[i] << step) + carry;
+                digits[i] = total % base;
+                carry = total / base;
+            }
+            while (carry > 0) {
+                digits[length++] = carry % base;
+                carry /= base;
             }
+            n -= step;
+        }
+        Num result = new Num(digits, isNegative);
+        result.base = base;
+        result.clean();
+        return result;
+    }
+
+    /**
+     * Divides the Num by 2^n, one pass over the digits for every SHIFT_STEP
+     * bits. Result is truncated towards zero.
+     *
+     * @param n number of bits to shift by, negative shifts left
+     * @return Num that stores this / 2^n
+     */
+    public Num shiftRight(int n) {
+        if (n < 0) {
+            return shiftLeft(-n);
+        }
+        if (isBinary(base)) {
+            return shiftRightBinary(n);
+        }
+        if (n > SHIFT_PASSES * SHIFT_STEP) {
+            return Num.divide(this, Num.power(new Num(2, base), n));
         }
+        long[] digits = Arrays.copyOf(arr, len);
+        while (n > 0) {
+            int step = Math.min(n, SHIFT_STEP);
+            divideBySmall(digits, len, 1L << step, base, digits);
+            n -= step;
+        }
+        Num result = new Num(digits, isNegative);
+        result.base = base;
+        result.clean();
+        return result;
+    }
 
-        return Token.ERROR;
+    /**
+     * shiftLeft for a power of 2 base: whole digits are moved and the
+     * remaining bits shifted across neighbouring digits in one pass
+     */
+    private Num shiftLeftBinary(int n) {
+        int bits = Long.numberOfTrailingZeros(base);
+        long mask = base - 1;
+        int digitShift = n / bits;
+        int bitShift = n % bits;
+        long[] digits = new long[len + digitShift + 1];
+        for (int i = 0; i < len; i++) {
+            long shifted = arr[i] << bitShift;
+            digits[i + digitShift] |= shifted & mask;
+            digits[i + digitShift + 1] = shifted >>> bits;
+        }
+        Num result = new Num(digits, isNegative);
+        result.base = base;
+        result.clean();
+        return result;
+    }
 
+    /**
+     * shiftRight for a power of 2 base: whole digits are dropped and the
+     * remaining bits shifted across neighbouring digits in one pass
+     */
+    private Num shiftRightBinary(int n) {
+        int bits = Long.numberOfTrailingZeros(base);
+        long mask = base - 1;
+        int digitShift = n / bits;
+        int bitShift = n % bits;
+        long[] digits = new long[Math.max(1, len - digitShift)];
+        for (int i = 0; i + digitShift < len; i++) {
+            long shifted = arr[i + digitShift] >>> bitShift;
+            if (i + digitShift + 1 < len) {
+                shifted |= (arr[i + digitShift + 1] << (bits - bitShift)) & mask;
+            }
+            digits[i] = shifted;
+        }
+        Num result = new Num(digits, isNegative);
+        result.base = base;
+        result.clean();
+        return result;
     }
 
-    private static class Rule {
+    /**
+     * Removes extra zeros at end of array. (in beginning of a number)
+     */
+    private void clean() {
+        if (this.len > 1) {
+            int length = this.len;
+            int i = this.len - 1;
+            while (i >= 1 && this.arr[i] == 0) {
+                length--;
+                i--;
+            }
+            if (length < this.arr.length) {
+                long[] array = new long[length];
+                for (i = 0; i < length; i++) {
+                    array[i] = this.arr[i];
+                }
+                this.arr = array;
+            }
+            this.len = length;
+        }
+        if (this.len == 1 && this.arr[0] == 0) {
+            this.isNegative = false;
+        }
+    }
 
-        int precedence;
-        Associativity associativity;
+    /**
+     * Evaluate an expression in postfix and return resulting number Each string
+     * is one of: "*", "+", "-", "/", "%", "^", "0", or a number: [1-9][0-9]*.
+     * There is no unary minus operator. See ExpressionPlan to evaluate the
+     * same expression many times.
+     *
+     * @param expr expression to evaluate
+     * @return Num storing the evaluation
+     */
+    public static Num evaluatePostfix(String[] expr) {
+        Num result = ExpressionPlan.compilePostfix(expr).evaluate();
+        if (expr.length > 0) {
+            System.out.println("Evaluated to: " + Arrays.toString(result.arr));
+        }
+        return result;
+    }
 
-        Rule(int _precedence, Associativity _associativity) {
-            precedence = _precedence;
-            associativity = _associativity;
+    /**
+     * Evaluate an expression in infix and return resulting number Each string
+     * is one of: "*", "+", "-", "/", "%", "^", "0", or a number: [1-9][0-9]*.
+     * There is no unary minus operator.
+     *
+     * @param expr expression to evaluate
+     * @return Num storing the evaluation
+     * @throws Exception bad operands
+     */
+    public static Num evaluateInfix(String[] expr) throws Exception {
+        ExpressionPlan plan = ExpressionPlan.compileInfix(expr);
+        System.out.println("RPN: " + Arrays.toString(plan.postfix()));
+        Num result = plan.evaluate();
+        if (plan.ops.length > 0) {
+            System.out.println("Evaluated to: " + Arrays.toString(result.arr));
         }
+        return result;
     }
 
     /**
@@ -0,0 +1,230 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary serialization of Num. Digits are written as they are stored, so
+ * writing and reading are a copy of the digit array with no base conversion.
+ *
+ * Format, little endian:
+ * offset 0: int magic "NUM1"
+ * offset 4: int flags, bit 0 set for negative numbers
+ * offset 8: long base
+ * offset 16: long number of digits n
+ * offset 24: n longs, the digits, least significant first
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+public final class NumIO {
+
+    /**
+     * "NUM1" in ASCII
+     */
+    private static final int MAGIC = 0x314D554E;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int FLAG_NEGATIVE = 1;
+
+    /**
+     * Size of the buffer used by the streaming writer and reader
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Largest number of bytes mapped at once
+     */
+    private static final int MAP_WINDOW = 1 << 30;
+
+    private NumIO() {
+    }
+
+    /**
+     * Writes x to a file, replacing its contents
+     *
+     * @param x Num to write
+     * @param path file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Num x, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(x, channel);
+        }
+    }
+
+    /**
+     * Writes x to a channel, through a fixed size buffer
+     *
+     * @param x Num to write
+     * @param channel channel to write to, e.g. a FileChannel
+     * @throws IOException if the channel cannot be written
+     */
+    public static void write(Num x, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(x.isNegative ? FLAG_NEGATIVE : 0);
+        buffer.putLong(x.base);
+        buffer.putLong(x.len);
+        int i = 0;
+        while (true) {
+            LongBuffer digits = buffer.asLongBuffer();
+            int count = Math.min(digits.remaining(), x.len - i);
+            digits.put(x.arr, i, count);
+            buffer.position(buffer.position() + 8 * count);
+            i += count;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            if (i == x.len) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a Num from a file
+     *
+     * @param path file to read
+     * @return Num stored in the file
+     * @throws IOException if the file cannot be read or is not a Num
+     */
+    public static Num read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads a Num from a channel, through a fixed size buffer
+     *
+     * @param channel channel to read from, e.g. a FileChannel
+     * @return Num read from the channel
+     * @throws IOException if the channel cannot be read or does not contain
+     * a Num
+     */
+    public static Num read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(HEADER_SIZE);
+        fill(channel, buffer);
+        buffer.flip();
+        boolean isNegative = readFlags(buffer);
+        long base = readBase(buffer);
+        int length = readLength(buffer);
+        // The header is not trusted with the size of the array: it grows as
+        // digits arrive, so a bad length fails with EOFException
+        long[] digits = new long[Math.min(length, BUFFER_SIZE / 8)];
+        int i = 0;
+        while (i < length) {
+            if (i == digits.length) {
+                digits = Arrays.copyOf(digits, (int) Math.min(length, 2L * digits.length));
+            }
+            buffer.clear();
+            buffer.limit(8 * Math.min(BUFFER_SIZE / 8, digits.length - i));
+            fill(channel, buffer);
+            buffer.flip();
+            int count = buffer.remaining() / 8;
+            buffer.asLongBuffer().get(digits, i, count);
+            i += count;
+        }
+        return toNum(digits, isNegative, base);
+    }
+
+    /**
+     * Reads a Num from a memory mapped file. Num keeps its digits in a long
+     * array, so they are copied out of the mapping with one bulk copy per
+     * window instead of going through a buffer.
+     *
+     * @param path file to read
+     * @return Num stored in the file
+     * @throws IOException if the file cannot be read or is not a Num
+     */
+    public static Num map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new EOFException("Truncated Num");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            boolean isNegative = readFlags(header);
+            long base = readBase(header);
+            int length = readLength(header);
+            if (channel.size() < HEADER_SIZE + 8L * length) {
+                throw new EOFException("Truncated Num");
+            }
+            long[] digits = new long[length];
+            // A mapping is limited to 2^31 bytes, so huge files are mapped in
+            // windows
+            int i = 0;
+            while (i < digits.length) {
+                int count = Math.min(MAP_WINDOW / 8, digits.length - i);
+                MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 8L * i, 8L * count);
+                body.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(digits, i, count);
+                i += count;
+            }
+            return toNum(digits, isNegative, base);
+        }
+    }
+
+    /**
+     * Reads from channel until buffer is full
+     */
+    private static void fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated Num");
+            }
+        }
+    }
+
+    /**
+     * Checks the magic number and reads the sign
+     */
+    private static boolean readFlags(ByteBuffer header) throws IOException {
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a Num");
+        }
+        return (header.getInt() & FLAG_NEGATIVE) != 0;
+    }
+
+    private static long readBase(ByteBuffer header) throws IOException {
+        long base = header.getLong();
+        if (base < 2 || base > Num.MAX_BASE) {
+            throw new IOException("Bad base " + base);
+        }
+        return base;
+    }
+
+    private static int readLength(ByteBuffer header) throws IOException {
+        long length = header.getLong();
+        if (length < 1 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Bad length " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Checks that every digit is less than base and creates the Num
+     */
+    private static Num toNum(long[] digits, boolean isNegative, long base) throws IOException {
+        for (long digit : digits) {
+            if (digit < 0 || digit >= base) {
+                throw new IOException("Bad digit " + digit);
+            }
+        }
+        return Num.fromDigits(digits, isNegative, base);
+    }
+}
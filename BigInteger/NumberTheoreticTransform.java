@@ -0,0 +1,365 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Multiplication of large magnitudes using number theoretic transforms.
+ *
+ * Digits of both operands are convolved modulo three NTT friendly primes and
+ * the exact convolution is recombined with the Chinese remainder theorem
+ * (Garner's algorithm), then carried back into the base of the operands.
+ *
+ * From Num.parallelThreshold limbs the three convolutions run in parallel,
+ * and so does every transform: its butterflies are split into chunks of
+ * GRAIN, so that a single product keeps all the threads of the pool busy.
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+final class NumberTheoreticTransform {
+
+    /**
+     * Primes of form c * 2^k + 1, all having 3 as primitive root
+     */
+    private static final long P0 = 998244353L;  // 119 * 2^23 + 1
+    private static final long P1 = 167772161L;  // 5 * 2^25 + 1
+    private static final long P2 = 469762049L;  // 7 * 2^26 + 1
+
+    private static final long PRIMITIVE_ROOT = 3;
+
+    /**
+     * Butterflies (or values) handled by one task of a parallel transform
+     */
+    private static final int GRAIN = 1 << 12;
+
+    /**
+     * Longest transform supported by all three primes
+     */
+    static final int MAX_LENGTH = 1 << 23;
+
+    /**
+     * Product of the three primes, convolution terms must stay below it
+     */
+    private static final double MODULUS = (double) P0 * P1 * P2;
+
+    /**
+     * P0^-1 mod P1, (P0 * P1)^-1 mod P2 used by Garner's algorithm
+     */
+    private static final long P0_INV_P1 = modPow(P0 % P1, P1 - 2, P1);
+    private static final long P0P1_INV_P2 = modPow((P0 % P2) * (P1 % P2) % P2, P2 - 2, P2);
+
+    private NumberTheoreticTransform() {
+    }
+
+    /**
+     * Checks whether the exact convolution of the operands can be recovered
+     * from the three residues
+     *
+     * @param aLen number of digits of first operand
+     * @param bLen number of digits of second operand
+     * @param base base of the operands
+     * @return true if multiply can be used for these operands
+     */
+    static boolean supports(int aLen, int bLen, long base) {
+        long length = transformLength(aLen + bLen - 1);
+        return length <= MAX_LENGTH
+                && Math.min(aLen, bLen) * (double) (base - 1) * (base - 1) < MODULUS;
+    }
+
+    /**
+     * Multiplies magnitudes a[aOff..aOff+aLen-1] and b[bOff..bOff+bLen-1]
+     *
+     * @return array of aLen + bLen digits storing the product
+     */
+    static long[] multiply(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, long base) {
+        int n = transformLength(aLen + bLen - 1);
+        if (Math.max(aLen, bLen) >= Num.parallelThreshold) {
+            List<long[]> residues = Num.invokeAll(Arrays.<Supplier<long[]>>asList(
+                    () -> convolve(a, aOff, aLen, b, bOff, bLen, n, P0, true),
+                    () -> convolve(a, aOff, aLen, b, bOff, bLen, n, P1, true),
+                    () -> convolve(a, aOff, aLen, b, bOff, bLen, n, P2, true)));
+            return recombine(residues.get(0), residues.get(1), residues.get(2), aLen + bLen, base);
+        }
+        long[] r0 = convolve(a, aOff, aLen, b, bOff, bLen, n, P0, false);
+        long[] r1 = convolve(a, aOff, aLen, b, bOff, bLen, n, P1, false);
+        long[] r2 = convolve(a, aOff, aLen, b, bOff, bLen, n, P2, false);
+        return recombine(r0, r1, r2, aLen + bLen, base);
+    }
+
+    /**
+     * @return smallest power of 2 not less than length
+     */
+    private static int transformLength(int length) {
+        int n = 1;
+        while (n < length) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * Cyclic convolution of length n of both operands modulo prime p
+     *
+     * @param parallel true to transform both operands in parallel
+     */
+    private static long[] convolve(long[] a, int aOff, int aLen, long[] b, int bOff, int bLen, int n, long p, boolean parallel) {
+        long[] fa;
+        if (a == b && aOff == bOff && aLen == bLen) {
+            fa = forward(a, aOff, aLen, n, p, parallel);
+            for (int i = 0; i < n; i++) {
+                fa[i] = fa[i] * fa[i] % p;
+            }
+        } else {
+            long[] fb;
+            if (parallel) {
+                List<long[]> transforms = Num.invokeAll(Arrays.<Supplier<long[]>>asList(
+                        () -> forward(a, aOff, aLen, n, p, true),
+                        () -> forward(b, bOff, bLen, n, p, true)));
+                fa = transforms.get(0);
+                fb = transforms.get(1);
+            } else {
+                fa = forward(a, aOff, aLen, n, p, false);
+                fb = forward(b, bOff, bLen, n, p, false);
+            }
+            for (int i = 0; i < n; i++) {
+                fa[i] = fa[i] * fb[i] % p;
+            }
+        }
+        if (parallel) {
+            parallelTransform(fa, p, true);
+        } else {
+            transform(fa, p, true);
+        }
+        return fa;
+    }
+
+    /**
+     * @return transform of length n of digits x[off..off+len-1] modulo p
+     */
+    private static long[] forward(long[] x, int off, int len, int n, long p, boolean parallel) {
+        long[] fx = new long[n];
+        for (int i = 0; i < len; i++) {
+            fx[i] = x[off + i] % p;
+        }
+        if (parallel) {
+            parallelTransform(fx, p, false);
+        } else {
+            transform(fx, p, false);
+        }
+        return fx;
+    }
+
+    /**
+     * Iterative in place transform (Cooley-Tukey, bit reversed input order)
+     *
+     * @param x values to transform, length is a power of 2
+     * @param p prime modulus
+     * @param inverse true for the inverse transform, which includes the
+     * division by length
+     */
+    private static void transform(long[] x, long p, boolean inverse) {
+        int n = x.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            while ((j & bit) != 0) {
+                j ^= bit;
+                bit >>= 1;
+            }
+            j |= bit;
+            if (i < j) {
+                long temp = x[i];
+                x[i] = x[j];
+                x[j] = temp;
+            }
+        }
+
+        long[] roots = new long[n / 2 + 1];
+        for (int len = 2; len <= n; len <<= 1) {
+            long w = modPow(PRIMITIVE_ROOT, (p - 1) / len, p);
+            if (inverse) {
+                w = modPow(w, p - 2, p);
+            }
+            int half = len >> 1;
+            roots[0] = 1;
+            for (int k = 1; k < half; k++) {
+                roots[k] = roots[k - 1] * w % p;
+            }
+            for (int start = 0; start < n; start += len) {
+                for (int k = 0; k < half; k++) {
+                    long u = x[start + k];
+                    long v = x[start + k + half] * roots[k] % p;
+                    long sum = u + v;
+                    x[start + k] = sum >= p ? sum - p : sum;
+                    long diff = u - v;
+                    x[start + k + half] = diff < 0 ? diff + p : diff;
+                }
+            }
+        }
+
+        if (inverse) {
+            long nInverse = modPow(n, p - 2, p);
+            for (int i = 0; i < n; i++) {
+                x[i] = x[i] * nInverse % p;
+            }
+        }
+    }
+
+    /**
+     * The transform above, with every pass split into tasks of GRAIN
+     * butterflies run by Num.invokeAll. The stages up to a length of
+     * 2 * GRAIN stay inside blocks of that length and are done block by
+     * block; every later stage is one parallel pass over all butterflies.
+     * Roots of unity come from a single table, w^(k * n / len) being the
+     * k-th root of the stage of length len.
+     */
+    private static void parallelTransform(long[] x, long p, boolean inverse) {
+        int n = x.length;
+        int block = 2 * GRAIN;
+        if (n <= block) {
+            transform(x, p, inverse);
+            return;
+        }
+
+        int shift = Integer.numberOfLeadingZeros(n) + 1;
+        inParallel(n, GRAIN, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = Integer.reverse(i) >>> shift;
+                if (i < j) {
+                    long temp = x[i];
+                    x[i] = x[j];
+                    x[j] = temp;
+                }
+            }
+        });
+
+        long root = modPow(PRIMITIVE_ROOT, (p - 1) / n, p);
+        long w = inverse ? modPow(root, p - 2, p) : root;
+        long[] roots = new long[n / 2];
+        inParallel(n / 2, GRAIN, (from, to) -> {
+            long r = modPow(w, from, p);
+            for (int k = from; k < to; k++) {
+                roots[k] = r;
+                r = r * w % p;
+            }
+        });
+
+        inParallel(n, block, (from, to) -> {
+            for (int len = 2; len <= block; len <<= 1) {
+                int half = len >> 1;
+                int stride = n / len;
+                for (int start = from; start < to; start += len) {
+                    for (int k = 0; k < half; k++) {
+                        butterfly(x, start + k, half, roots[k * stride], p);
+                    }
+                }
+            }
+        });
+        for (int len = 2 * block; len <= n; len <<= 1) {
+            int half = len >> 1;
+            int stride = n / len;
+            int log = Integer.numberOfTrailingZeros(half);
+            inParallel(n / 2, GRAIN, (from, to) -> {
+                for (int b = from; b < to; b++) {
+                    int k = b & (half - 1);
+                    butterfly(x, ((b >>> log) << (log + 1)) + k, half, roots[k * stride], p);
+                }
+            });
+        }
+
+        if (inverse) {
+            long nInverse = modPow(n, p - 2, p);
+            inParallel(n, GRAIN, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    x[i] = x[i] * nInverse % p;
+                }
+            });
+        }
+    }
+
+    /**
+     * Combines x[i] and x[i + half] with root r, as in transform
+     */
+    private static void butterfly(long[] x, int i, int half, long r, long p) {
+        long u = x[i];
+        long v = x[i + half] * r % p;
+        long sum = u + v;
+        x[i] = sum >= p ? sum - p : sum;
+        long diff = u - v;
+        x[i + half] = diff < 0 ? diff + p : diff;
+    }
+
+    /**
+     * A range of indices [from, to) handled by one task
+     */
+    private interface Range {
+
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs range over [0, count) in tasks of chunk indices each
+     */
+    private static void inParallel(int count, int chunk, Range range) {
+        List<Supplier<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < count; from += chunk) {
+            int start = from;
+            int end = Math.min(count, from + chunk);
+            tasks.add(() -> {
+                range.run(start, end);
+                return null;
+            });
+        }
+        Num.invokeAll(tasks);
+    }
+
+    /**
+     * Recovers every convolution term from its three residues and carries the
+     * terms into digits of the given base.
+     *
+     * A term is r0 + P0 * t1 + P0 * P1 * t2, which can exceed a long, so each
+     * part is split into its lowest digit and the rest before carrying.
+     */
+    private static long[] recombine(long[] r0, long[] r1, long[] r2, int length, long base) {
+        long p0p1 = P0 * P1;
+        long p0p1Low = p0p1 % base;
+        long p0p1High = p0p1 / base;
+        long p0ModP2 = P0 % P2;
+
+        long[] result = new long[length];
+        long carry = 0;
+        for (int k = 0; k < length; k++) {
+            long a0 = k < r0.length ? r0[k] : 0;
+            long a1 = k < r1.length ? r1[k] : 0;
+            long a2 = k < r2.length ? r2[k] : 0;
+
+            long t1 = (a1 - a0 % P1 + P1) % P1 * P0_INV_P1 % P1;
+            long partial = (a0 % P2 + p0ModP2 * t1) % P2;
+            long t2 = (a2 - partial + P2) % P2 * P0P1_INV_P2 % P2;
+
+            long middle = P0 * t1;
+            long top = t2 * p0p1Low;
+            long low = a0 + middle % base + top % base + carry;
+            result[k] = low % base;
+            carry = low / base + middle / base + top / base + t2 * p0p1High;
+        }
+        return result;
+    }
+
+    /**
+     * @return x^e mod p
+     */
+    private static long modPow(long x, long e, long p) {
+        long result = 1;
+        x %= p;
+        while (e > 0) {
+            if ((e & 1) == 1) {
+                result = result * x % p;
+            }
+            x = x * x % p;
+            e >>= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Divide and conquer conversion of magnitudes between bases.
+ *
+ * A number is split as high * from^k + low, where k is a power of 2 times
+ * LEAF_SIZE, both halves are converted recursively and recombined with one
+ * product in the new base. Powers from^k are computed once per pair of bases
+ * and cached through soft references, so the collector can drop the power
+ * tree of a pair that is no longer converted. Leaves are converted with Horner's rule.
+ *
+ * Version : 1.0
+ *
+ * @author Tej Patel, Param Parikh
+ */
+final class RadixConversion {
+
+    /**
+     * Number of digits below which Horner's rule is used
+     */
+    private static final int LEAF_SIZE = 32;
+
+    /**
+     * powers.get(from + ":" + to).get(i) stores from^(LEAF_SIZE * 2^i) in
+     * base to, cleared under memory pressure
+     */
+    private static final Map<String, SoftReference<ArrayList<long[]>>> powers = new ConcurrentHashMap<>();
+
+    /**
+     * reciprocals.get(from + ":" + to).get(i) stores the reciprocal of
+     * powers.get(from + ":" + to).get(i) used for Barrett division, null
+     * until needed, cleared under memory pressure
+     */
+    private static final Map<String, SoftReference<ArrayList<long[]>>> reciprocals = new ConcurrentHashMap<>();
+
+    private RadixConversion() {
+    }
+
+    /**
+     * Converts magnitude digits[0..len-1] from base from to base to
+     *
+     * @param digits digits of the magnitude, least significant first
+     * @param len number of digits
+     * @param from base of digits
+     * @param to base to convert to
+     * @return digits of the magnitude in base to, may have leading zeros
+     */
+    static long[] convert(long[] digits, int len, long from, long to) {
+        if (from == to) {
+            long[] result = new long[Math.max(1, len)];
+            System.arraycopy(digits, 0, result, 0, len);
+            return result;
+        }
+        return convert(digits, 0, len, from, to);
+    }
+
+    private static long[] convert(long[] digits, int off, int len, long from, long to) {
+        if (len <= LEAF_SIZE) {
+            return horner(digits, off, len, from, to);
+        }
+        int level = 0;
+        int half = LEAF_SIZE;
+        while (2 * half < len) {
+            half *= 2;
+            level++;
+        }
+        long[] high = convert(digits, off + half, len - half, from, to);
+        long[] low = convert(digits, off, half, from, to);
+        long[] power = power(from, to, level);
+        long[] result = Num.multiply(high, 0, high.length, power, 0, power.length, to);
+        Num.addInPlace(result, 0, low, low.length, to);
+        return result;
+    }
+
+    /**
+     * Writes magnitude digits[0..len-1] in base from to out, as chunks of
+     * chunkDigits decimal digits (chunkBase = 10^chunkDigits), most
+     * significant first. The number is split top down by dividing by
+     * chunkBase^(LEAF_SIZE * 2^level), so output starts after a chain of
+     * divisions of decreasing size instead of after the whole conversion.
+     *
+     * @throws IOException if out fails
+     */
+    static void writeChunks(long[] digits, int len, long from, long chunkBase, int chunkDigits, Appendable out) throws IOException {
+        len = Num.significantLength(digits, 0, len);
+        if (len == 0) {
+            out.append('0');
+            return;
+        }
+        // Number of chunks is at most len * log(from) / log(chunkBase) + 1
+        double chunks = len * Math.log(from) / Math.log(chunkBase) + 1;
+        int level = 0;
+        while ((double) LEAF_SIZE * (1L << level) < chunks) {
+            level++;
+        }
+        StringBuilder leaf = new StringBuilder(LEAF_SIZE * chunkDigits);
+        writeChunks(digits, len, level, false, from, chunkBase, chunkDigits, leaf, out);
+    }
+
+    /**
+     * Writes magnitude digits[0..len-1] which is less than
+     * chunkBase^(LEAF_SIZE * 2^level)
+     *
+     * @param pad true to write all LEAF_SIZE * 2^level chunks, with leading
+     * zeros, false to skip leading zeros
+     */
+    private static void writeChunks(long[] digits, int len, int level, boolean pad, long from, long chunkBase,
+            int chunkDigits, StringBuilder leaf, Appendable out) throws IOException {
+        len = Num.significantLength(digits, 0, len);
+        if (level == 0) {
+            long[] chunks = horner(digits, 0, len, from, chunkBase);
+            int count = pad ? LEAF_SIZE : Math.max(1, Num.significantLength(chunks, 0, chunks.length));
+            leaf.setLength(0);
+            for (int i = count - 1; i >= 0; i--) {
+                long chunk = i < chunks.length ? chunks[i] : 0;
+                if (pad || i < count - 1) {
+                    for (long limit = chunkBase / 10; limit > 1 && chunk < limit; limit /= 10) {
+                        leaf.append('0');
+                    }
+                }
+                leaf.append(chunk);
+            }
+            out.append(leaf);
+            return;
+        }
+        long[] power = power(chunkBase, from, level - 1);
+        int powerLen = Num.significantLength(power, 0, power.length);
+        long[][] division = divide(digits, len, power, powerLen, reciprocal(chunkBase, from, level - 1), from);
+        long[] high = division[0];
+        long[] low = division[1];
+        int highLen = Num.significantLength(high, 0, high.length);
+        if (pad || highLen > 0) {
+            writeChunks(high, highLen, level - 1, pad, from, chunkBase, chunkDigits, leaf, out);
+            pad = true;
+        }
+        writeChunks(low, low.length, level - 1, pad, from, chunkBase, chunkDigits, leaf, out);
+    }
+
+    /**
+     * Barrett division of x by p, where x is less than p^2 and mu is
+     * floor(base^(2 * pLen) / p): the quotient estimate
+     * floor(floor(x / base^(pLen - 1)) * mu / base^(pLen + 1)) is at most 2
+     * below the quotient.
+     *
+     * @return array storing digits of quotient at index 0 and digits of
+     * remainder at index 1
+     */
+    private static long[][] divide(long[] x, int xLen, long[] p, int pLen, long[] mu, long base) {
+        long[] q;
+        if (xLen > pLen - 1) {
+            long[] product = Num.multiply(x, pLen - 1, xLen - pLen + 1, mu, 0, mu.length, base);
+            int qLen = Math.max(0, product.length - pLen - 1);
+            q = new long[qLen + 1];
+            System.arraycopy(product, pLen + 1, q, 0, qLen);
+        } else {
+            q = new long[1];
+        }
+        long[] qp = Num.multiply(q, 0, q.length, p, 0, pLen, base);
+        long[] r = new long[Math.max(xLen, qp.length)];
+        System.arraycopy(x, 0, r, 0, xLen);
+        Num.subtractInPlace(r, qp, base);
+        while (compare(r, p, pLen) >= 0) {
+            Num.subtractInPlace(r, p, base);
+            Num.addInPlace(q, 0, new long[]{1}, 1, base);
+        }
+        return new long[][]{q, r};
+    }
+
+    /**
+     * Compares magnitude a with magnitude b[0..bLen-1]
+     */
+    private static int compare(long[] a, long[] b, int bLen) {
+        int aLen = Num.significantLength(a, 0, a.length);
+        if (aLen != bLen) {
+            return aLen < bLen ? -1 : 1;
+        }
+        for (int i = aLen - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return floor(to^(2n) / p) in base to, where p = power(from, to, level)
+     * has n digits
+     */
+    private static long[] reciprocal(long from, long to, int level) {
+        long[] power = power(from, to, level);
+        ArrayList<long[]> cached = cached(reciprocals, from, to);
+        synchronized (cached) {
+            while (cached.size() <= level) {
+                cached.add(null);
+            }
+            if (cached.get(level) == null) {
+                int n = Num.significantLength(power, 0, power.length);
+                cached.set(level, Num.reciprocal(power, n, 2 * n, to));
+            }
+            return cached.get(level);
+        }
+    }
+
+    /**
+     * Horner's rule: result = result * from + digit, from the most
+     * significant digit down
+     */
+    private static long[] horner(long[] digits, int off, int len, long from, long to) {
+        long[] result = new long[(int) Math.ceil(len * Math.log(from) / Math.log(to)) + 2];
+        int length = 0;
+        for (int i = off + len - 1; i >= off; i--) {
+            long carry = digits[i];
+            for (int j = 0; j < length; j++) {
+                // carry is added after the division to avoid an overflow
+                long total = result[j] * from;
+                long val = total % to + carry;
+                carry = total / to + val / to;
+                result[j] = val % to;
+            }
+            while (carry > 0) {
+                result[length++] = carry % to;
+                carry /= to;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return list cached for the pair of bases, a new empty one if the
+     * collector cleared it
+     */
+    private static ArrayList<long[]> cached(Map<String, SoftReference<ArrayList<long[]>>> cache, long from, long to) {
+        ArrayList<long[]> list;
+        do {
+            list = cache.compute(from + ":" + to,
+                    (key, ref) -> ref == null || ref.get() == null ? new SoftReference<>(new ArrayList<>()) : ref).get();
+        } while (list == null);
+        return list;
+    }
+
+    /**
+     * @return from^(LEAF_SIZE * 2^level) in base to
+     */
+    private static long[] power(long from, long to, int level) {
+        ArrayList<long[]> cached = cached(powers, from, to);
+        synchronized (cached) {
+            if (cached.isEmpty()) {
+                long[] one = new long[LEAF_SIZE + 1];
+                one[LEAF_SIZE] = 1;
+                cached.add(horner(one, 0, one.length, from, to));
+            }
+            while (cached.size() <= level) {
+                long[] last = cached.get(cached.size() - 1);
+                cached.add(Num.multiply(last, 0, last.length, last, 0, last.length, to));
+            }
+            return cached.get(level);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package psp170230;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A HashSet using bucketized Cuckoo hashing: 2 hash functions, each choosing a
+ * bucket of BUCKET_SIZE slots. With 8 candidate slots per element the table
+ * fills beyond 95% before an insertion fails to find a free slot.
+ *
+ * Next to the keys every bucket keeps an int of 4 one byte tags, a fingerprint
+ * of the hash of each key (0 for an empty slot). A lookup compares the tag of
+ * its element with the 4 tags of a bucket at once and calls equals() only on
+ * the keys whose tag matches, so most misses read no key at all.
+ *
+ * Elements with equal hashCode( ) share their buckets whatever the seed, so a
+ * resize cannot make room for more than 2 * BUCKET_SIZE of them. Only such
+ * elements go to an overflow area sorted by hashCode( ), which a lookup
+ * searches only when it is not empty; every resize puts its elements back in
+ * the buckets if they fit there.
+ *
+ * @author Param Parikh
+ * @param <T> Key to store in Set
+ */
+public class BucketCuckooHashing<T> {
+
+    /**
+     * Slots per bucket, one tag byte each
+     */
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * Elements by capacity ratio from which the set is resized, even if
+     * insertions still succeed
+     */
+    private static final float LOAD_FACTOR = 0.98f;
+
+    /**
+     * A safe guard just to prevent memory leakage
+     */
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    /**
+     * Number of evictions tried by an insertion before the set is resized
+     */
+    private static final int MAX_KICKS = 500;
+
+    /**
+     * 1 in every byte
+     */
+    private static final int LOW_BITS = 0x01010101;
+
+    /**
+     * 0x7F in every byte
+     */
+    private static final int HIGH_MASK = 0x7F7F7F7F;
+
+    private final Random rand;
+
+    /**
+     * Keys, bucket b using keys[BUCKET_SIZE * b .. BUCKET_SIZE * b + 3]
+     */
+    private Object[] keys;
+
+    /**
+     * Tags of bucket b, the tag of slot i in byte i
+     */
+    private int[] tags;
+
+    /**
+     * Number of buckets, a power of 2
+     */
+    private int buckets = 1 << 2;
+
+    /**
+     * Seed of the hash function
+     */
+    private long seed;
+
+    /**
+     * Elements whose buckets are both full of elements with their
+     * hashCode( ), in overflow[0..overflowSize-1], sorted by hashCode( )
+     */
+    private Object[] overflow = new Object[BUCKET_SIZE];
+
+    /**
+     * hashCode( ) of overflow[i]
+     */
+    private int[] overflowHashes = new int[BUCKET_SIZE];
+
+    /**
+     * Number of elements in overflow
+     */
+    private int overflowSize = 0;
+
+    /**
+     * Total number of elements in Set
+     */
+    private int size = 0;
+
+    /**
+     * Initializing the buckets and the hash function
+     */
+    public BucketCuckooHashing() {
+        rand = new Random();
+        seed = rand.nextLong();
+        keys = new Object[BUCKET_SIZE * buckets];
+        tags = new int[buckets];
+    }
+
+    /**
+     * Mixes the hashCode of an element with the seed. The low bits choose the
+     * first bucket, bits 32 and above the second one and the top byte is the
+     * tag
+     */
+    private long hash(Object x) {
+        long h = (x.hashCode() ^ seed) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 32);
+    }
+
+    private int firstBucket(long h) {
+        return (int) h & (buckets - 1);
+    }
+
+    /**
+     * Second bucket, always different from the first one
+     */
+    private int secondBucket(long h) {
+        int b = (int) (h >>> 32) & (buckets - 1);
+        return b != firstBucket(h) ? b : b ^ 1;
+    }
+
+    /**
+     * Tag of an element, never 0
+     */
+    private static int tag(long h) {
+        int tag = (int) (h >>> 56);
+        return tag != 0 ? tag : 1;
+    }
+
+    /**
+     * Compares the 4 tags of a word with tag at once
+     *
+     * @return a word with the high bit of byte i set if and only if byte i of
+     * word equals tag
+     */
+    private static int match(int word, int tag) {
+        int v = word ^ (tag * LOW_BITS);
+        return ~(((v & HIGH_MASK) + HIGH_MASK) | v | HIGH_MASK);
+    }
+
+    /**
+     * @return slot of x in bucket b, -1 if it is not there
+     */
+    private int find(Object x, int b, int tag) {
+        for (int m = match(tags[b], tag); m != 0; m &= m - 1) {
+            int slot = BUCKET_SIZE * b + (Integer.numberOfTrailingZeros(m) >>> 3);
+            if (keys[slot].equals(x)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether given element already exists in set or not
+     *
+     * @param x Element to check for
+     * @return True if element present in set, otherwise false
+     */
+    public boolean contains(T x) {
+        long h = hash(x);
+        int tag = tag(h);
+        return find(x, firstBucket(h), tag) >= 0 || find(x, secondBucket(h), tag) >= 0
+                || overflowSize > 0 && findOverflow(x) >= 0;
+    }
+
+    /**
+     * @return index of x in overflow, -1 if it is not there
+     */
+    private int findOverflow(Object x) {
+        int key = x.hashCode();
+        for (int i = firstOverflow(key); i < overflowSize && overflowHashes[i] == key; i++) {
+            if (overflow[i].equals(x)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return first index of overflow whose hashCode( ) is not less than key
+     */
+    private int firstOverflow(int key) {
+        int low = 0;
+        int high = overflowSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (overflowHashes[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds x to overflow, keeping it sorted
+     */
+    private void addToOverflow(Object x) {
+        int key = x.hashCode();
+        if (overflowSize == overflow.length) {
+            overflow = Arrays.copyOf(overflow, 2 * overflowSize);
+            overflowHashes = Arrays.copyOf(overflowHashes, 2 * overflowSize);
+        }
+        int i = firstOverflow(key);
+        System.arraycopy(overflow, i, overflow, i + 1, overflowSize - i);
+        System.arraycopy(overflowHashes, i, overflowHashes, i + 1, overflowSize - i);
+        overflow[i] = x;
+        overflowHashes[i] = key;
+        overflowSize++;
+    }
+
+    /**
+     * Checks whether both buckets of x are full of elements with the
+     * hashCode( ) of x, in which case no resize can make room for x
+     */
+    private boolean saturated(Object x) {
+        long h = hash(x);
+        int key = x.hashCode();
+        return fullOf(firstBucket(h), key) && fullOf(secondBucket(h), key);
+    }
+
+    /**
+     * @return true if every slot of bucket b holds an element whose
+     * hashCode( ) is key
+     */
+    private boolean fullOf(int b, int key) {
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            Object y = keys[BUCKET_SIZE * b + i];
+            if (y == null || y.hashCode() != key) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Puts x in a free slot of bucket b
+     *
+     * @return false if bucket b is full
+     */
+    private boolean putInBucket(Object x, int b, int tag) {
+        int free = match(tags[b], 0);
+        if (free == 0) {
+            return false;
+        }
+        int i = Integer.numberOfTrailingZeros(free) >>> 3;
+        keys[BUCKET_SIZE * b + i] = x;
+        tags[b] |= tag << (8 * i);
+        return true;
+    }
+
+    /**
+     * Add given element in set, it it's not there.
+     *
+     * @param x Element to add in set
+     * @return true if element is added, otherwise false
+     */
+    public boolean add(T x) {
+        if (contains(x)) {
+            return false;
+        }
+
+        place(x);
+        size++;
+        if (size >= LOAD_FACTOR * BUCKET_SIZE * buckets) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Function to add an element which is not in the set. When both its
+     * buckets are full it evicts a random key of one of them, which moves to
+     * its other bucket, and so on up to MAX_KICKS times. Then an element which
+     * collides with all the elements of its buckets goes to overflow, since
+     * no resize can make room for it; otherwise the set is resized
+     *
+     * @param x Element to add
+     */
+    private void place(Object x) {
+        while (true) {
+            long h = hash(x);
+            int tag = tag(h);
+            int b = firstBucket(h);
+            if (putInBucket(x, b, tag) || putInBucket(x, secondBucket(h), tag)) {
+                return;
+            }
+            if (rand.nextBoolean()) {
+                b = secondBucket(h);
+            }
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int i = rand.nextInt(BUCKET_SIZE);
+                int slot = BUCKET_SIZE * b + i;
+                Object evicted = keys[slot];
+                keys[slot] = x;
+                tags[b] = tags[b] & ~(0xFF << (8 * i)) | tag << (8 * i);
+
+                x = evicted;
+                h = hash(x);
+                tag = tag(h);
+                b = firstBucket(h) != b ? firstBucket(h) : secondBucket(h);
+                if (putInBucket(x, b, tag)) {
+                    return;
+                }
+            }
+            if (saturated(x)) {
+                addToOverflow(x);
+                return;
+            }
+            resize();
+        }
+    }
+
+    /**
+     * Doubles the number of buckets, picks a new hash function and re-inserts
+     * every key, including the ones in overflow
+     */
+    private void resize() {
+        if (buckets >= MAX_CAPACITY / BUCKET_SIZE) {
+            throw new IllegalStateException("...MAXIMUM MEMORY LIMIT REACHED...");
+        }
+        Object[] oldKeys = keys;
+        Object[] oldOverflow = overflow;
+        int oldOverflowSize = overflowSize;
+        buckets <<= 1;
+        keys = new Object[BUCKET_SIZE * buckets];
+        tags = new int[buckets];
+        overflow = new Object[BUCKET_SIZE];
+        overflowHashes = new int[BUCKET_SIZE];
+        overflowSize = 0;
+        seed = rand.nextLong();
+        for (Object x : oldKeys) {
+            if (x != null) {
+                place(x);
+            }
+        }
+        for (int i = 0; i < oldOverflowSize; i++) {
+            place(oldOverflow[i]);
+        }
+    }
+
+    /**
+     * Remove given element from the set, if it exists
+     *
+     * @param x Element to remove from set
+     * @return true if element was present, otherwise false
+     */
+    public boolean remove(T x) {
+        long h = hash(x);
+        int tag = tag(h);
+        int b = firstBucket(h);
+        int slot = find(x, b, tag);
+        if (slot < 0) {
+            b = secondBucket(h);
+            slot = find(x, b, tag);
+            if (slot < 0) {
+                return overflowSize > 0 && removeFromOverflow(x);
+            }
+        }
+        keys[slot] = null;
+        tags[b] &= ~(0xFF << (8 * (slot - BUCKET_SIZE * b)));
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes x from overflow, if it is there
+     */
+    private boolean removeFromOverflow(Object x) {
+        int i = findOverflow(x);
+        if (i < 0) {
+            return false;
+        }
+        overflowSize--;
+        System.arraycopy(overflow, i + 1, overflow, i, overflowSize - i);
+        System.arraycopy(overflowHashes, i + 1, overflowHashes, i, overflowSize - i);
+        overflow[overflowSize] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Function to check whether set is having any element inside
+     *
+     * @return true is set is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Function to check total number of elements inside set
+     *
+     * @return number of elements in set
+     */
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,186 @@
+package psp170230;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Regression check for keys with equal hashCode( ), which no choice of hash
+ * functions can separate. Every set must keep them all without resizing
+ * without end.
+ *
+ * @author Param Parikh
+ */
+public class CollisionDriver {
+
+    /**
+     * A key whose hashCode( ) is always 42
+     */
+    private static final class Collider {
+
+        private final int id;
+
+        Collider(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collider && ((Collider) o).id == id;
+        }
+    }
+
+    /**
+     * @return 16 strings of "Aa" and "BB" pairs, which all have the same
+     * hashCode( )
+     */
+    private static List<Object> collidingStrings() {
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int bit = 0; bit < 4; bit++) {
+                sb.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+            }
+            keys.add(sb.toString());
+        }
+        return keys;
+    }
+
+    private static List<Object> colliders() {
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            keys.add(new Collider(i));
+        }
+        return keys;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("FAILED: " + message);
+            System.exit(1);
+        }
+    }
+
+    private static void checkCuckooHashing(List<Object> keys, boolean incremental) throws Exception {
+        CuckooHashing<Object> set = new CuckooHashing<>(incremental);
+        for (int i = 0; i < 1000; i++) {
+            check(set.add(i), "CuckooHashing add " + i);
+        }
+        for (Object key : keys) {
+            check(set.add(key), "CuckooHashing add " + key);
+            check(!set.add(key), "CuckooHashing duplicate " + key);
+        }
+        for (Object key : keys) {
+            check(set.contains(key), "CuckooHashing contains " + key);
+        }
+        check(set.size() == 1000 + keys.size(), "CuckooHashing size");
+        for (Object key : keys) {
+            check(set.remove(key), "CuckooHashing remove " + key);
+            check(!set.contains(key), "CuckooHashing removed " + key);
+        }
+        for (int i = 0; i < 1000; i++) {
+            check(set.contains(i), "CuckooHashing contains " + i);
+        }
+    }
+
+    private static void checkCuckooHashMap(List<Object> keys, boolean incremental) {
+        CuckooHashMap<Object, Integer> map = new CuckooHashMap<>(incremental);
+        for (int i = 0; i < 1000; i++) {
+            check(map.put(i, i) == null, "CuckooHashMap put " + i);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            check(map.putIfAbsent(keys.get(i), i) == null, "CuckooHashMap put " + keys.get(i));
+            check(map.putIfAbsent(keys.get(i), -1) == i, "CuckooHashMap duplicate " + keys.get(i));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            check(map.get(keys.get(i)) == i, "CuckooHashMap get " + keys.get(i));
+        }
+        check(map.size() == 1000 + keys.size(), "CuckooHashMap size");
+        for (int i = 0; i < keys.size(); i++) {
+            check(map.remove(keys.get(i)) == i, "CuckooHashMap remove " + keys.get(i));
+            check(!map.containsKey(keys.get(i)), "CuckooHashMap removed " + keys.get(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            check(map.get(i) == i, "CuckooHashMap get " + i);
+        }
+    }
+
+    private static void checkBucketCuckooHashing(List<Object> keys) {
+        BucketCuckooHashing<Object> set = new BucketCuckooHashing<>();
+        for (int i = 0; i < 1000; i++) {
+            check(set.add(i), "BucketCuckooHashing add " + i);
+        }
+        for (Object key : keys) {
+            check(set.add(key), "BucketCuckooHashing add " + key);
+            check(!set.add(key), "BucketCuckooHashing duplicate " + key);
+        }
+        for (Object key : keys) {
+            check(set.contains(key), "BucketCuckooHashing contains " + key);
+        }
+        check(set.size() == 1000 + keys.size(), "BucketCuckooHashing size");
+        for (Object key : keys) {
+            check(set.remove(key), "BucketCuckooHashing remove " + key);
+            check(!set.contains(key), "BucketCuckooHashing removed " + key);
+        }
+        for (int i = 0; i < 1000; i++) {
+            check(set.contains(i), "BucketCuckooHashing contains " + i);
+        }
+    }
+
+    /**
+     * Adds, finds and removes keys from several threads at once
+     */
+    private static void checkConcurrentCuckooHashing(List<Object> keys) throws InterruptedException {
+        ConcurrentCuckooHashing<Object> set = new ConcurrentCuckooHashing<>();
+        Thread[] threads = new Thread[4];
+        boolean[] failed = new boolean[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    set.add(id * 1000 + i);
+                }
+                for (Object key : keys) {
+                    set.add(key);
+                    failed[id] |= !set.contains(key);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean f : failed) {
+            check(!f, "ConcurrentCuckooHashing contains while adding");
+        }
+        check(set.size() == 1000 * threads.length + keys.size(), "ConcurrentCuckooHashing size");
+        for (Object key : keys) {
+            check(set.contains(key), "ConcurrentCuckooHashing contains " + key);
+            check(set.remove(key), "ConcurrentCuckooHashing remove " + key);
+            check(!set.contains(key), "ConcurrentCuckooHashing removed " + key);
+        }
+        for (int i = 0; i < 1000 * threads.length; i++) {
+            check(set.contains(i), "ConcurrentCuckooHashing contains " + i);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Timer timer = new Timer();
+        for (List<Object> keys : Arrays.asList(collidingStrings(), colliders())) {
+            checkCuckooHashing(keys, false);
+            checkCuckooHashing(keys, true);
+            checkCuckooHashMap(keys, false);
+            checkCuckooHashMap(keys, true);
+            checkBucketCuckooHashing(keys);
+            checkConcurrentCuckooHashing(keys);
+        }
+        timer.end();
+        System.out.print("Colliding keys OK || ");
+        System.out.println(timer);
+    }
+}
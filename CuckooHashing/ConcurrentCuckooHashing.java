@@ -0,0 +1,622 @@
+package psp170230;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe HashSet using the same first level Cuckoo hashing mechanism
+ * as CuckooHashing.
+ *
+ * Slots are grouped in stripes of STRIPE_SIZE consecutive slots, each guarded
+ * by a versioned lock: a counter which is odd while a writer holds the stripe
+ * and grows by 2 with every write. add() and remove() lock the stripes of the
+ * HASH_FUNCTIONS slots of their element. An eviction path is searched without
+ * locks and then applied from its free end, one move at a time, each move
+ * locking only the 2 stripes it touches.
+ *
+ * contains() takes no lock and writes nothing: it reads the versions of its
+ * stripes, the slots, and the versions again, and retries if a version
+ * changed in between.
+ *
+ * Resize allocates a table of twice the capacity and moves stripes to it a few
+ * at a time, each writer moving some before its own operation. Until every
+ * stripe is moved both tables are in use: a moved slot holds MOVED, which
+ * sends readers and writers on to the new table.
+ *
+ * Elements with equal hashCode( ) share their slots whatever the hash
+ * functions, so a resize cannot make room for more than HASH_FUNCTIONS of them.
+ * Only an element whose slots all hold elements with its hashCode( ) goes to
+ * the overflow of its table, which lookups check only when it is not empty.
+ * Overflow elements are grouped by the stripe of their slot in table 0, and
+ * move to the next table with that stripe.
+ *
+ * @author Param Parikh
+ * @param <T> Key to store in Set
+ */
+public class ConcurrentCuckooHashing<T> {
+
+    /**
+     * Elements by capacity ratio from which an insertion with no free slot
+     * resizes instead of evicting
+     */
+    private static final float LOAD_FACTOR = 0.9f;
+
+    /**
+     * A safe guard just to prevent memory leakage
+     */
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    /**
+     * Number of hash functions in Cuckoo mechanism
+     */
+    private static final int HASH_FUNCTIONS = 4;
+
+    /**
+     * Longest eviction path searched before the set is resized
+     */
+    private static final int MAX_KICKS = 64;
+
+    /**
+     * log2 of the number of slots guarded by one lock
+     */
+    private static final int STRIPE_SHIFT = 6;
+
+    /**
+     * Number of stripes moved to the new table by every writer during a
+     * resize
+     */
+    private static final int MIGRATE_STRIPES = 2;
+
+    /**
+     * Content of a slot whose stripe has been moved to the next table
+     */
+    private static final Object MOVED = new Object();
+
+    /**
+     * Oldest table which may still hold elements
+     */
+    private final AtomicReference<Table> root;
+
+    /**
+     * Total number of elements in Set
+     */
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Initializing the first table
+     */
+    public ConcurrentCuckooHashing() {
+        root = new AtomicReference<>(new Table(1 << 4));
+    }
+
+    /**
+     * The HASH_FUNCTIONS tables of one capacity, one after the other, with
+     * their hash functions and locks
+     */
+    private static final class Table {
+
+        /**
+         * Capacity of every table, a power of 2
+         */
+        final int capacity;
+
+        /**
+         * 32 - log2(capacity)
+         */
+        final int shift;
+
+        /**
+         * Coefficients of hash function
+         */
+        final int[][] coeffs;
+
+        /**
+         * Elements, null or MOVED, table i using slots [i * capacity, (i + 1) * capacity)
+         */
+        final AtomicReferenceArray<Object> slots;
+
+        /**
+         * Versioned lock of every stripe
+         */
+        final AtomicLongArray locks;
+
+        /**
+         * Number of stripes
+         */
+        final int stripes;
+
+        /**
+         * Stripes already moved to next, each entry guarded by its stripe lock
+         */
+        final boolean[] migrated;
+
+        /**
+         * Next stripe to move
+         */
+        final AtomicInteger cursor = new AtomicInteger();
+
+        /**
+         * Number of stripes moved
+         */
+        final AtomicInteger migratedStripes = new AtomicInteger();
+
+        /**
+         * Table this one is being moved to, null if not resizing
+         */
+        final AtomicReference<Table> next = new AtomicReference<>();
+
+        /**
+         * Elements whose slots all hold elements with their hashCode( ), by
+         * owner( ) stripe. A group is only changed under the lock of its
+         * stripe
+         */
+        final ConcurrentHashMap<Integer, Set<Object>> overflow = new ConcurrentHashMap<>();
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.shift = Integer.numberOfLeadingZeros(capacity - 1);
+            int length = HASH_FUNCTIONS * capacity;
+            slots = new AtomicReferenceArray<>(length);
+            stripes = Math.max(1, length >>> STRIPE_SHIFT);
+            locks = new AtomicLongArray(stripes);
+            migrated = new boolean[stripes];
+            coeffs = new int[HASH_FUNCTIONS][2];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                coeffs[i][0] = random.nextInt();
+                coeffs[i][1] = random.nextInt();
+            }
+        }
+
+        /**
+         * @return slot of an element with hashCode() key in table i
+         */
+        int slot(int key, int i) {
+            return i * capacity + ((key * coeffs[i][0] + coeffs[i][1]) >>> shift);
+        }
+
+        /**
+         * @return stripe of the slot in table 0 of an element with hashCode()
+         * key, which guards its overflow group
+         */
+        int owner(int key) {
+            return slot(key, 0) >>> STRIPE_SHIFT;
+        }
+
+        boolean inOverflow(int key, Object x) {
+            if (overflow.isEmpty()) {
+                return false;
+            }
+            Set<Object> group = overflow.get(owner(key));
+            return group != null && group.contains(x);
+        }
+
+        /**
+         * Adds x to overflow. The stripe owner(key) must be locked
+         */
+        void addToOverflow(int key, Object x) {
+            overflow.computeIfAbsent(owner(key), s -> ConcurrentHashMap.newKeySet()).add(x);
+        }
+
+        /**
+         * Removes x from overflow, if it is there. The stripe owner(key) must
+         * be locked
+         */
+        boolean removeFromOverflow(int key, Object x) {
+            if (overflow.isEmpty()) {
+                return false;
+            }
+            Set<Object> group = overflow.get(owner(key));
+            if (group == null || !group.remove(x)) {
+                return false;
+            }
+            if (group.isEmpty()) {
+                overflow.remove(owner(key));
+            }
+            return true;
+        }
+
+        /**
+         * Spins until stripe s is free and takes it
+         */
+        void lock(int s) {
+            while (true) {
+                long version = locks.get(s);
+                if ((version & 1) == 0 && locks.compareAndSet(s, version, version + 1)) {
+                    return;
+                }
+                Thread.yield();
+            }
+        }
+
+        void unlock(int s) {
+            locks.incrementAndGet(s);
+        }
+
+        /**
+         * Stores the stripes of the slots of key in out, in increasing order
+         */
+        void stripesOf(int key, int[] out) {
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                int s = slot(key, i) >>> STRIPE_SHIFT;
+                int j = i;
+                for (; j > 0 && out[j - 1] > s; j--) {
+                    out[j] = out[j - 1];
+                }
+                out[j] = s;
+            }
+        }
+
+        /**
+         * Locks sorted stripes, in order so that writers never deadlock
+         */
+        void lockAll(int[] stripes) {
+            for (int i = 0; i < stripes.length; i++) {
+                if (i == 0 || stripes[i] != stripes[i - 1]) {
+                    lock(stripes[i]);
+                }
+            }
+        }
+
+        void unlockAll(int[] stripes) {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                if (i == 0 || stripes[i] != stripes[i - 1]) {
+                    unlock(stripes[i]);
+                }
+            }
+        }
+
+        /**
+         * Moves y from slot from to the free slot to, if both still are as
+         * the eviction path found them
+         *
+         * @return true if y was moved
+         */
+        boolean move(int from, int to, Object y) {
+            int a = Math.min(from, to) >>> STRIPE_SHIFT;
+            int b = Math.max(from, to) >>> STRIPE_SHIFT;
+            lock(a);
+            if (b != a) {
+                lock(b);
+            }
+            try {
+                if (slots.get(from) != y || slots.get(to) != null) {
+                    return false;
+                }
+                slots.set(to, y);
+                slots.set(from, null);
+                return true;
+            } finally {
+                if (b != a) {
+                    unlock(b);
+                }
+                unlock(a);
+            }
+        }
+    }
+
+    /**
+     * Checks whether given element already exists in set or not
+     *
+     * Takes no lock: the slots are read between two reads of the versions of
+     * their stripes, and read again if a writer came in between
+     *
+     * @param x Element to check for
+     * @return True if element present in set, otherwise false
+     */
+    public boolean contains(T x) {
+        int key = x.hashCode();
+        Table t = root.get();
+        retry:
+        while (true) {
+            // Versions only grow, so an unchanged sum means unchanged versions
+            long before = 0;
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                long version = t.locks.get(t.slot(key, i) >>> STRIPE_SHIFT);
+                if ((version & 1) != 0) {
+                    Thread.yield();
+                    continue retry;
+                }
+                before += version;
+            }
+
+            boolean moved = false;
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                Object y = t.slots.get(t.slot(key, i));
+                if (y == MOVED) {
+                    moved = true;
+                } else if (y != null && y.equals(x)) {
+                    // x was in the set when it was read
+                    return true;
+                }
+            }
+
+            // Until its owner( ) stripe is moved, x stays in this overflow
+            // even if other slots of x are MOVED
+            boolean overflowed = t.inOverflow(key, x);
+
+            long after = 0;
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                after += t.locks.get(t.slot(key, i) >>> STRIPE_SHIFT);
+            }
+            if (after != before) {
+                continue;
+            }
+            if (overflowed) {
+                return true;
+            }
+            if (!moved) {
+                return false;
+            }
+            // x may have been moved to the next table
+            t = t.next.get();
+        }
+    }
+
+    /**
+     * Add given element in set, it it's not there.
+     *
+     * @param x Element to add in set
+     * @return true if element is added, otherwise false
+     */
+    public boolean add(T x) {
+        return insert(root.get(), x, true);
+    }
+
+    /**
+     * Adds x to table t or to a table it is being moved to
+     *
+     * @param counted true to count x in size, false when x is moved by a
+     * resize
+     * @return true if x was not in the set
+     */
+    private boolean insert(Table t, T x, boolean counted) {
+        int key = x.hashCode();
+        int[] stripes = new int[HASH_FUNCTIONS];
+        while (true) {
+            t.stripesOf(key, stripes);
+            t.lockAll(stripes);
+            Table next;
+            try {
+                next = t.next.get();
+                if (next != null) {
+                    // x must be looked for and added in next only
+                    for (int s : stripes) {
+                        migrate(t, s);
+                    }
+                } else {
+                    int free = -1;
+                    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                        int p = t.slot(key, i);
+                        Object y = t.slots.get(p);
+                        if (y == null) {
+                            if (free < 0) {
+                                free = p;
+                            }
+                        } else if (y.equals(x)) {
+                            return false;
+                        }
+                    }
+                    if (t.inOverflow(key, x)) {
+                        return false;
+                    }
+                    if (free >= 0) {
+                        t.slots.set(free, x);
+                        if (counted) {
+                            size.increment();
+                        }
+                        return true;
+                    }
+                    if (saturated(t, key)) {
+                        // No resize can make room for x
+                        t.addToOverflow(key, x);
+                        if (counted) {
+                            size.increment();
+                        }
+                        return true;
+                    }
+                }
+            } finally {
+                t.unlockAll(stripes);
+            }
+
+            if (next != null) {
+                helpMigrate(t);
+                t = next;
+            } else if (size.sum() >= LOAD_FACTOR * t.slots.length() || !evict(t, key)) {
+                resize(t);
+            }
+        }
+    }
+
+    /**
+     * Checks whether all slots of key in t hold elements with hashCode( ) key,
+     * in which case no resize can make room for another one. The stripes of
+     * key must be locked
+     */
+    private boolean saturated(Table t, int key) {
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            Object y = t.slots.get(t.slot(key, i));
+            if (y == null || y == MOVED || y.hashCode() != key) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Frees a slot of key by a random walk of evictions. The walk is found
+     * without locks and applied from its free end, so that every element is
+     * in a slot at all times.
+     *
+     * @return false if no free slot was found within MAX_KICKS evictions,
+     * true if a slot was freed or the walk became stale and should be retried
+     */
+    private boolean evict(Table t, int key) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] path = new int[MAX_KICKS + 1];
+        Object[] elements = new Object[MAX_KICKS];
+        int length = 0;
+        int p = t.slot(key, random.nextInt(HASH_FUNCTIONS));
+        while (true) {
+            Object y = t.slots.get(p);
+            if (y == null) {
+                break;
+            }
+            if (y == MOVED || length == MAX_KICKS) {
+                return false;
+            }
+            path[length] = p;
+            elements[length] = y;
+            length++;
+            int table = p / t.capacity;
+            int other = random.nextInt(HASH_FUNCTIONS - 1);
+            if (other >= table) {
+                other++;
+            }
+            p = t.slot(y.hashCode(), other);
+        }
+        path[length] = p;
+
+        for (int i = length - 1; i >= 0; i--) {
+            if (!t.move(path[i], path[i + 1], elements[i])) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts moving t to a table of twice its capacity, unless it is already
+     * being moved
+     */
+    private void resize(Table t) {
+        if (t.next.get() != null) {
+            return;
+        }
+        if (t.capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("...MAXIMUM MEMORY LIMIT REACHED...");
+        }
+        t.next.compareAndSet(null, new Table(2 * t.capacity));
+    }
+
+    /**
+     * Moves the next MIGRATE_STRIPES stripes of t which nobody claimed yet
+     */
+    private void helpMigrate(Table t) {
+        for (int n = 0; n < MIGRATE_STRIPES; n++) {
+            int s = t.cursor.getAndIncrement();
+            if (s >= t.stripes) {
+                return;
+            }
+            t.lock(s);
+            try {
+                migrate(t, s);
+            } finally {
+                t.unlock(s);
+            }
+        }
+    }
+
+    /**
+     * Moves the elements of stripe s, which must be locked, and its overflow
+     * group to the next table and marks its slots MOVED
+     */
+    @SuppressWarnings("unchecked")
+    private void migrate(Table t, int s) {
+        if (t.migrated[s]) {
+            return;
+        }
+        Table next = t.next.get();
+        int end = Math.min((s + 1) << STRIPE_SHIFT, t.slots.length());
+        for (int p = s << STRIPE_SHIFT; p < end; p++) {
+            Object y = t.slots.get(p);
+            if (y != null) {
+                insert(next, (T) y, false);
+            }
+            t.slots.set(p, MOVED);
+        }
+        Set<Object> group = t.overflow.remove(s);
+        if (group != null) {
+            for (Object y : group) {
+                insert(next, (T) y, false);
+            }
+        }
+        t.migrated[s] = true;
+
+        if (t.migratedStripes.incrementAndGet() == t.stripes) {
+            Table r;
+            while ((r = root.get()).migratedStripes.get() == r.stripes) {
+                root.compareAndSet(r, r.next.get());
+            }
+        }
+    }
+
+    /**
+     * Remove given element from the set, if it exists
+     *
+     * @param x Element to remove from set
+     * @return true if element was present, otherwise false
+     */
+    public boolean remove(T x) {
+        int key = x.hashCode();
+        int[] stripes = new int[HASH_FUNCTIONS];
+        Table t = root.get();
+        while (true) {
+            t.stripesOf(key, stripes);
+            t.lockAll(stripes);
+            Table next;
+            try {
+                next = t.next.get();
+                if (next == null) {
+                    for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                        int p = t.slot(key, i);
+                        Object y = t.slots.get(p);
+                        if (y != null && y.equals(x)) {
+                            t.slots.set(p, null);
+                            size.decrement();
+                            return true;
+                        }
+                    }
+                    if (t.removeFromOverflow(key, x)) {
+                        size.decrement();
+                        return true;
+                    }
+                    return false;
+                }
+                for (int s : stripes) {
+                    migrate(t, s);
+                }
+            } finally {
+                t.unlockAll(stripes);
+            }
+            helpMigrate(t);
+            t = next;
+        }
+    }
+
+    /**
+     * Function to check whether set is having any element inside
+     *
+     * @return true is set is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+
+    /**
+     * Function to check total number of elements inside set
+     *
+     * @return number of elements in set
+     */
+    public int size() {
+        return size.intValue();
+    }
+
+}
@@ -0,0 +1,162 @@
+package psp170230;
+
+import java.util.function.Function;
+
+/**
+ * A HashMap using the Cuckoo hashing mechanism of CuckooHashing, through the
+ * same CuckooTable: HASH_FUNCTIONS tables, eviction along a bounded random
+ * walk, a small stash and an overflow area for keys with equal hashCode( ).
+ *
+ * Keys and values are stored in parallel arrays, so no entry object is ever
+ * allocated. A lookup checks HASH_FUNCTIONS slots and at most STASH_SIZE
+ * stashed keys. Neither keys nor values may be null.
+ *
+ * @author Param Parikh
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class CuckooHashMap<K, V> {
+
+    /**
+     * Keys and their values
+     */
+    private final CuckooTable<K, V> table;
+
+    /**
+     * Initializing an empty map. Resize re-adds every entry at once
+     */
+    public CuckooHashMap() {
+        this(false);
+    }
+
+    /**
+     * Initializing an empty map
+     *
+     * @param incrementalResize true to spread the moving of entries after a
+     * resize over the following insertions
+     */
+    public CuckooHashMap(boolean incrementalResize) {
+        table = new CuckooTable<>(true, incrementalResize);
+    }
+
+    /**
+     * Returns the value mapped to a key
+     *
+     * @param key Key to look for
+     * @return value of key, null if key is not in the map
+     */
+    public V get(Object key) {
+        long location = table.locate(key);
+        return location < 0 ? null : table.valueAt(location);
+    }
+
+    /**
+     * Checks whether given key already exists in map or not
+     *
+     * @param key Key to check for
+     * @return True if key present in map, otherwise false
+     */
+    public boolean containsKey(Object key) {
+        return table.locate(key) >= 0;
+    }
+
+    /**
+     * Maps key to value, replacing the value key had
+     *
+     * @param key Key to add or update
+     * @param value New value of key
+     * @return previous value of key, null if key was not in the map
+     */
+    public V put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long location = table.locate(key);
+        if (location < 0) {
+            table.insert(key, value);
+            return null;
+        }
+
+        V old = table.valueAt(location);
+        table.setValueAt(location, value);
+        return old;
+    }
+
+    /**
+     * Maps key to value if key is not in the map
+     *
+     * @param key Key to add
+     * @param value Value of key
+     * @return current value of key, null if key was added
+     */
+    public V putIfAbsent(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long location = table.locate(key);
+        if (location >= 0) {
+            return table.valueAt(location);
+        }
+        table.insert(key, value);
+        return null;
+    }
+
+    /**
+     * Returns the value of key, first mapping it to function(key) if key is
+     * not in the map
+     *
+     * @param key Key to look for
+     * @param function Computes the value of a missing key, or null to leave
+     * the map unchanged
+     * @return value of key, null if it was missing and function returned null
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        long location = table.locate(key);
+        if (location >= 0) {
+            return table.valueAt(location);
+        }
+        V value = function.apply(key);
+        if (value == null) {
+            return null;
+        }
+        // function may have changed the map
+        V current = putIfAbsent(key, value);
+        return current != null ? current : value;
+    }
+
+    /**
+     * Removes a key from the map, if it exists
+     *
+     * @param key Key to remove
+     * @return value key had, null if key was not in the map
+     */
+    public V remove(Object key) {
+        long location = table.locate(key);
+        if (location < 0) {
+            return null;
+        }
+
+        V old = table.valueAt(location);
+        table.removeAt(location);
+        return old;
+    }
+
+    /**
+     * Function to check whether map is having any entry inside
+     *
+     * @return true is map is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return table.size() == 0;
+    }
+
+    /**
+     * Function to check total number of entries inside map
+     *
+     * @return number of entries in map
+     */
+    public int size() {
+        return table.size();
+    }
+
+}
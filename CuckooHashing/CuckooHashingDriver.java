@@ -49,6 +49,19 @@ public class CuckooHashingDriver {
         System.out.print("Unique from Cuckoo: " + count + " || ");
         System.out.println(timer1);
 
+        Scanner sc3 = new Scanner(file);
+        IntCuckooSet intCuckoo = new IntCuckooSet();
+        count = 0;
+        Timer timer3 = new Timer();
+        while (sc3.hasNext()) {
+            if (intCuckoo.add(Integer.parseInt(sc3.next()))) {
+                count++;
+            }
+        }
+        timer3.end();
+        System.out.print("Unique from IntCuckoo: " + count + " || ");
+        System.out.println(timer3);
+
 
     }
 }
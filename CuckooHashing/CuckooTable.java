@@ -0,0 +1,615 @@
+package psp170230;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The Cuckoo hashing mechanism behind CuckooHashing and CuckooHashMap: keys in
+ * HASH_FUNCTIONS master tables, with their values, if any, in parallel tables.
+ *
+ * A key whose slots are all taken evicts one of their occupants, which moves to
+ * one of its other slots, and so on along a bounded random walk. The key left
+ * over by a walk which gives up goes to a small stash, which is emptied into
+ * the master tables at the time of resize. A lookup checks HASH_FUNCTIONS slots
+ * and at most STASH_SIZE stashed keys.
+ *
+ * Keys with equal hashCode( ) share their slots whatever the hash functions,
+ * so a resize cannot make room for more than HASH_FUNCTIONS of them. Only such
+ * keys go to an overflow area sorted by hashCode( ), which a lookup searches
+ * only when it is not empty; every resize puts its keys back in the master
+ * tables if they fit there.
+ *
+ * In incremental resize mode the previous master tables are kept after a
+ * resize and every insertion moves MIGRATE_SLOTS of their slots to the new
+ * ones, so that no single call re-adds every key. Until they are empty,
+ * lookups check both.
+ *
+ * A key is found by locate( ), whose result is the location of the key for
+ * valueAt( ), setValueAt( ) and removeAt( ), valid until the next insertion.
+ *
+ * @author Param Parikh
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+final class CuckooTable<K, V> {
+
+    /**
+     * Desired current elements by capacity ratio
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Multiply the previous capacity by this constant when LOAD_FACTOR is
+     * reached
+     */
+    private static final int MULTIPLIER = 2;
+
+    /**
+     * A safe guard just to prevent memory leakage
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Number of hash functions in Cuckoo mechanism
+     */
+    private static final int HASH_FUNCTIONS = 4;
+
+    /**
+     * Each hash function will utilize this many coefficients to generate a
+     * final hash value
+     */
+    private static final int NUMBER_OF_COEFF = 2;
+
+    /**
+     * Number of evictions tried by an insertion before its last evicted key
+     * goes to the stash
+     */
+    private static final int MAX_KICKS = 32;
+
+    /**
+     * Capacity of the stash. A full stash forces a resize
+     */
+    private static final int STASH_SIZE = 4;
+
+    /**
+     * Number of slots of the previous master tables moved by every insertion
+     * in incremental resize mode. They are empty before the new ones reach
+     * LOAD_FACTOR as long as this is at least 2
+     */
+    private static final int MIGRATE_SLOTS = 8;
+
+    /**
+     * Parts of the table a location returned by locate( ) points into
+     */
+    private static final int MASTER = 0;
+    private static final int STASH = 1;
+    private static final int OLD_MASTER = 2;
+    private static final int OVERFLOW = 3;
+
+    /**
+     * Seed to generate random numbers, which along with coefficients generates
+     * a hash function
+     */
+    private final Random rand;
+
+    /**
+     * True if keys have values
+     */
+    private final boolean withValues;
+
+    /**
+     * True to move keys to resized master tables a few at a time
+     */
+    private final boolean incrementalResize;
+
+    /**
+     * Master tables of keys
+     */
+    private K[][] keys;
+
+    /**
+     * Value of the key in the same slot, null if keys have no values
+     */
+    private V[][] values;
+
+    /**
+     * Coefficients of hash function
+     */
+    private int[][] coeffs;
+
+    /**
+     * Capacity of every master table, a power of 2
+     */
+    private int capacity = 1 << 4;
+
+    /**
+     * Keys which could not be placed in master tables, in
+     * stashKeys[0..stashSize-1]
+     */
+    private final K[] stashKeys;
+
+    private final V[] stashValues;
+
+    /**
+     * Number of keys in stash
+     */
+    private int stashSize = 0;
+
+    /**
+     * Keys whose slots all hold keys with their hashCode( ), and which the
+     * stash could not take, in overflowKeys[0..overflowSize-1], sorted by
+     * hashCode( )
+     */
+    private K[] overflowKeys;
+
+    private V[] overflowValues;
+
+    /**
+     * hashCode( ) of overflowKeys[i]
+     */
+    private int[] overflowHashes;
+
+    /**
+     * Number of keys in overflow
+     */
+    private int overflowSize = 0;
+
+    /**
+     * Previous master tables, whose keys are not all moved yet. null if there
+     * are none
+     */
+    private K[][] oldKeys;
+
+    private V[][] oldValues;
+
+    /**
+     * Coefficients of hash function of oldKeys
+     */
+    private int[][] oldCoeffs;
+
+    /**
+     * Capacity of oldKeys
+     */
+    private int oldCapacity;
+
+    /**
+     * Slots of oldKeys before this index, counted table after table, are
+     * empty
+     */
+    private int migrated;
+
+    /**
+     * Total number of keys
+     */
+    private int size = 0;
+
+    /**
+     * Initializing space for master tables, stash, overflow, coefficients for
+     * hash functions
+     *
+     * @param withValues true to store a value with every key
+     * @param incrementalResize true to spread the moving of keys after a
+     * resize over the following insertions
+     */
+    CuckooTable(boolean withValues, boolean incrementalResize) {
+        this.withValues = withValues;
+        this.incrementalResize = incrementalResize;
+        keys = newTables(capacity);
+        values = withValues ? CuckooTable.<V>newTables(capacity) : null;
+        stashKeys = newArray(STASH_SIZE);
+        stashValues = newArray(STASH_SIZE);
+        overflowKeys = newArray(STASH_SIZE);
+        overflowValues = newArray(STASH_SIZE);
+        overflowHashes = new int[STASH_SIZE];
+        rand = new Random();
+        setCoeffs();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[][] newTables(int capacity) {
+        return (E[][]) new Object[HASH_FUNCTIONS][capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[] newArray(int length) {
+        return (E[]) new Object[length];
+    }
+
+    /**
+     * Setting up coefficients for hash functions from a randomly generated seed
+     */
+    private void setCoeffs() {
+        coeffs = new int[HASH_FUNCTIONS][NUMBER_OF_COEFF];
+
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            for (int j = 0; j < NUMBER_OF_COEFF; j++) {
+                coeffs[i][j] = rand.nextInt();
+            }
+        }
+    }
+
+    /**
+     * Hash function i of a master table
+     *
+     * @param coeffs coefficients of the hash functions of the table
+     * @param capacity capacity of the table, a power of 2
+     * @param key hashCode() of the key
+     * @param i index of the table
+     * @return slot of the key in table i
+     */
+    private static int hash(int[][] coeffs, int capacity, int key, int i) {
+        int calculated = key * coeffs[i][0];
+        calculated += coeffs[i][1];
+        // capacity is a power of 2: keep the high bits, which depend on
+        // every bit of key, unlike the low ones
+        return calculated >>> Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private static long location(int part, int index) {
+        return (long) part << 32 | index;
+    }
+
+    /**
+     * Finds a key
+     *
+     * Neither allocates nor writes any field, so concurrent calls are safe as
+     * long as no thread modifies the table
+     *
+     * @param key Key to look for
+     * @return location of key, -1 if it is not in the table
+     */
+    long locate(Object key) {
+        int h = key.hashCode();
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int position = hash(coeffs, capacity, h, i);
+            K k = keys[i][position];
+            if (k != null && k.equals(key)) {
+                return location(MASTER, i * capacity + position);
+            }
+        }
+
+        for (int i = 0; i < stashSize; i++) {
+            if (stashKeys[i].equals(key)) {
+                return location(STASH, i);
+            }
+        }
+
+        if (oldKeys != null) {
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                int position = hash(oldCoeffs, oldCapacity, h, i);
+                K k = oldKeys[i][position];
+                if (k != null && k.equals(key)) {
+                    return location(OLD_MASTER, i * oldCapacity + position);
+                }
+            }
+        }
+
+        if (overflowSize > 0) {
+            int i = findOverflow(h, key);
+            if (i >= 0) {
+                return location(OVERFLOW, i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param location location returned by locate( )
+     * @return value of the key at location, null if keys have no values
+     */
+    V valueAt(long location) {
+        int index = (int) location;
+        switch ((int) (location >>> 32)) {
+            case MASTER:
+                return withValues ? values[index / capacity][index % capacity] : null;
+            case STASH:
+                return stashValues[index];
+            case OLD_MASTER:
+                return withValues ? oldValues[index / oldCapacity][index % oldCapacity] : null;
+            default:
+                return overflowValues[index];
+        }
+    }
+
+    /**
+     * Replaces the value of the key at location
+     *
+     * @param location location returned by locate( )
+     * @param value new value
+     */
+    void setValueAt(long location, V value) {
+        int index = (int) location;
+        switch ((int) (location >>> 32)) {
+            case MASTER:
+                values[index / capacity][index % capacity] = value;
+                break;
+            case STASH:
+                stashValues[index] = value;
+                break;
+            case OLD_MASTER:
+                oldValues[index / oldCapacity][index % oldCapacity] = value;
+                break;
+            default:
+                overflowValues[index] = value;
+        }
+    }
+
+    /**
+     * Removes the key at location
+     *
+     * @param location location returned by locate( )
+     */
+    void removeAt(long location) {
+        int index = (int) location;
+        switch ((int) (location >>> 32)) {
+            case MASTER:
+                keys[index / capacity][index % capacity] = null;
+                if (withValues) {
+                    values[index / capacity][index % capacity] = null;
+                }
+                break;
+            case STASH:
+                stashSize--;
+                stashKeys[index] = stashKeys[stashSize];
+                stashValues[index] = stashValues[stashSize];
+                stashKeys[stashSize] = null;
+                stashValues[stashSize] = null;
+                break;
+            case OLD_MASTER:
+                oldKeys[index / oldCapacity][index % oldCapacity] = null;
+                if (withValues) {
+                    oldValues[index / oldCapacity][index % oldCapacity] = null;
+                }
+                break;
+            default:
+                overflowSize--;
+                System.arraycopy(overflowKeys, index + 1, overflowKeys, index, overflowSize - index);
+                System.arraycopy(overflowValues, index + 1, overflowValues, index, overflowSize - index);
+                System.arraycopy(overflowHashes, index + 1, overflowHashes, index, overflowSize - index);
+                overflowKeys[overflowSize] = null;
+                overflowValues[overflowSize] = null;
+        }
+        size--;
+    }
+
+    /**
+     * Adds a key which is not in the table.
+     *
+     * After adding the new key, if the table reaches to it's LOAD_FACTOR,
+     * resize() is called in order to maintain the LOAD_FACTOR
+     *
+     * @param key Key to add
+     * @param value Value of key, ignored if keys have no values
+     */
+    void insert(K key, V value) {
+        migrate(MIGRATE_SLOTS);
+        place(key, withValues ? value : null);
+        size++;
+        if (size >= HASH_FUNCTIONS * capacity * LOAD_FACTOR) {
+            resize();
+        }
+    }
+
+    /**
+     * Puts a key which is not in the table in a free slot, otherwise evicts
+     * the occupant of a random slot of the key and goes on with it, up to
+     * MAX_KICKS times. An evicted key never goes back to the table it was
+     * evicted from.
+     *
+     * The key left over goes to the stash. When the stash is full a key which
+     * collides with all the keys of its slots goes to overflow, since no
+     * resize can make room for it; otherwise the table is resized
+     */
+    private void place(K key, V value) {
+        while (true) {
+            int previous = -1;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int h = key.hashCode();
+                for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                    int position = hash(coeffs, capacity, h, i);
+                    if (keys[i][position] == null) {
+                        keys[i][position] = key;
+                        if (withValues) {
+                            values[i][position] = value;
+                        }
+                        return;
+                    }
+                }
+
+                int table;
+                if (previous < 0) {
+                    table = rand.nextInt(HASH_FUNCTIONS);
+                } else {
+                    table = rand.nextInt(HASH_FUNCTIONS - 1);
+                    if (table >= previous) {
+                        table++;
+                    }
+                }
+                int position = hash(coeffs, capacity, h, table);
+                K evictedKey = keys[table][position];
+                keys[table][position] = key;
+                key = evictedKey;
+                if (withValues) {
+                    V evictedValue = values[table][position];
+                    values[table][position] = value;
+                    value = evictedValue;
+                }
+                previous = table;
+            }
+
+            if (stashSize < STASH_SIZE) {
+                stashKeys[stashSize] = key;
+                stashValues[stashSize] = value;
+                stashSize++;
+                return;
+            }
+            if (saturated(key)) {
+                addToOverflow(key, value);
+                return;
+            }
+            resize();
+        }
+    }
+
+    /**
+     * Checks whether all slots of key in master tables hold keys with the
+     * hashCode( ) of key, in which case no resize can make room for it
+     */
+    private boolean saturated(K key) {
+        int h = key.hashCode();
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            K k = keys[i][hash(coeffs, capacity, h, i)];
+            if (k == null || k.hashCode() != h) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of key in overflow, -1 if it is not there
+     */
+    private int findOverflow(int h, Object key) {
+        for (int i = firstOverflow(h); i < overflowSize && overflowHashes[i] == h; i++) {
+            if (overflowKeys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return first index of overflow whose hashCode( ) is not less than h
+     */
+    private int firstOverflow(int h) {
+        int low = 0;
+        int high = overflowSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (overflowHashes[middle] < h) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds a key to overflow, keeping it sorted
+     */
+    private void addToOverflow(K key, V value) {
+        int h = key.hashCode();
+        if (overflowSize == overflowKeys.length) {
+            overflowKeys = Arrays.copyOf(overflowKeys, 2 * overflowSize);
+            overflowValues = Arrays.copyOf(overflowValues, 2 * overflowSize);
+            overflowHashes = Arrays.copyOf(overflowHashes, 2 * overflowSize);
+        }
+        int i = firstOverflow(h);
+        System.arraycopy(overflowKeys, i, overflowKeys, i + 1, overflowSize - i);
+        System.arraycopy(overflowValues, i, overflowValues, i + 1, overflowSize - i);
+        System.arraycopy(overflowHashes, i, overflowHashes, i + 1, overflowSize - i);
+        overflowKeys[i] = key;
+        overflowValues[i] = value;
+        overflowHashes[i] = h;
+        overflowSize++;
+    }
+
+    /**
+     * Utility function to increment the size of master tables, when the
+     * table reaches to it's LOAD_FACTOR or when the stash is full
+     *
+     * Hash functions are chosen again and the stashed and overflow keys are
+     * re-added to the new master tables. The keys of the previous ones are
+     * moved at once, or by migrate( ) in incremental resize mode
+     */
+    private void resize() {
+        // A resize while moving keys, because the stash is full, first
+        // finishes moving them
+        finishMigration();
+
+        if (capacity * MULTIPLIER > MAX_CAPACITY) {
+            throw new IllegalStateException("...MAXIMUM MEMORY LIMIT REACHED...");
+        }
+        oldCapacity = capacity;
+        capacity *= MULTIPLIER;
+
+        oldKeys = keys;
+        oldValues = values;
+        oldCoeffs = coeffs;
+        migrated = 0;
+        keys = newTables(capacity);
+        values = withValues ? CuckooTable.<V>newTables(capacity) : null;
+        K[] stashedKeys = stashKeys.clone();
+        V[] stashedValues = stashValues.clone();
+        int stashed = stashSize;
+        Arrays.fill(stashKeys, null);
+        Arrays.fill(stashValues, null);
+        stashSize = 0;
+        K[] overflowedKeys = overflowKeys;
+        V[] overflowedValues = overflowValues;
+        int overflowed = overflowSize;
+        overflowKeys = newArray(STASH_SIZE);
+        overflowValues = newArray(STASH_SIZE);
+        overflowHashes = new int[STASH_SIZE];
+        overflowSize = 0;
+        setCoeffs();
+
+        for (int i = 0; i < stashed; i++) {
+            place(stashedKeys[i], stashedValues[i]);
+        }
+        for (int i = 0; i < overflowed; i++) {
+            place(overflowedKeys[i], overflowedValues[i]);
+        }
+        if (!incrementalResize) {
+            finishMigration();
+        }
+    }
+
+    /**
+     * Moves up to count keys of the previous master tables to master tables,
+     * dropping the previous tables once they are empty
+     *
+     * @param count number of slots to move
+     */
+    private void migrate(int count) {
+        while (count-- > 0 && oldKeys != null) {
+            if (migrated == HASH_FUNCTIONS * oldCapacity) {
+                oldKeys = null;
+                oldValues = null;
+                oldCoeffs = null;
+                return;
+            }
+            int table = migrated / oldCapacity;
+            int position = migrated % oldCapacity;
+            migrated++;
+            K key = oldKeys[table][position];
+            if (key != null) {
+                oldKeys[table][position] = null;
+                V value = null;
+                if (withValues) {
+                    value = oldValues[table][position];
+                    oldValues[table][position] = null;
+                }
+                place(key, value);
+            }
+        }
+    }
+
+    /**
+     * Moves all remaining keys of the previous master tables
+     */
+    private void finishMigration() {
+        while (oldKeys != null) {
+            migrate(HASH_FUNCTIONS * oldCapacity);
+        }
+    }
+
+    /**
+     * @return number of keys in the table
+     */
+    int size() {
+        return size;
+    }
+
+}
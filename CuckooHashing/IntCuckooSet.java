@@ -0,0 +1,246 @@
+package psp170230;
+
+import java.util.Random;
+
+/**
+ * A set of int keys using Cuckoo hashing, with the keys stored directly in a
+ * primitive array. No operation allocates, except resize().
+ *
+ * The HASH_FUNCTIONS tables are laid out one after the other in a single
+ * array, table i using slots [i * capacity, (i + 1) * capacity). Empty slots
+ * hold EMPTY; the key EMPTY itself is tracked by a flag.
+ *
+ * @author Param Parikh
+ */
+public class IntCuckooSet {
+
+    /**
+     * Desired current elements by capacity ratio
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * A safe guard just to prevent memory leakage
+     */
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    /**
+     * Number of hash functions in Cuckoo mechanism, a power of 2
+     */
+    private static final int HASH_FUNCTIONS = 4;
+
+    /**
+     * Number of evictions tried by an insertion before the tables are resized
+     */
+    private static final int MAX_KICKS = 64;
+
+    /**
+     * Value of an empty slot
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * Seed to generate the coefficients of the hash functions
+     */
+    private final Random rand;
+
+    /**
+     * All tables, one after the other
+     */
+    private int[] table;
+
+    /**
+     * Odd multipliers of the hash functions
+     */
+    private int[] coeffs;
+
+    /**
+     * Capacity of every table, a power of 2
+     */
+    private int capacity = 1 << 4;
+
+    /**
+     * log2(capacity)
+     */
+    private int bits = 4;
+
+    /**
+     * True if EMPTY is in the set
+     */
+    private boolean containsEmpty;
+
+    /**
+     * Total number of elements in Set
+     */
+    private int size = 0;
+
+    /**
+     * State of the generator choosing which key to evict
+     */
+    private int kickSeed;
+
+    /**
+     * Initializing space for the tables and coefficients for hash functions
+     */
+    public IntCuckooSet() {
+        rand = new Random();
+        kickSeed = rand.nextInt() | 1;
+        table = new int[HASH_FUNCTIONS * capacity];
+        setCoeffs();
+    }
+
+    /**
+     * Setting up odd multipliers for the hash functions
+     */
+    private void setCoeffs() {
+        coeffs = new int[HASH_FUNCTIONS];
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            coeffs[i] = rand.nextInt() | 1;
+        }
+    }
+
+    /**
+     * Multiplicative hashing: the high bits of x * coeffs[i]
+     *
+     * @return slot of x in table i
+     */
+    private int slot(int x, int i) {
+        return i * capacity + ((x * coeffs[i]) >>> (32 - bits));
+    }
+
+    /**
+     * Checks whether given element already exists in set or not
+     *
+     * @param x Element to check for
+     * @return True if element present in set, otherwise false
+     */
+    public boolean contains(int x) {
+        if (x == EMPTY) {
+            return containsEmpty;
+        }
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            if (table[slot(x, i)] == x) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add given element in set, it it's not there.
+     *
+     * @param x Element to add in set
+     * @return true if element is added, otherwise false
+     */
+    public boolean add(int x) {
+        if (x == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        if (contains(x)) {
+            return false;
+        }
+
+        insert(x);
+        size++;
+        if (size >= HASH_FUNCTIONS * capacity * LOAD_FACTOR) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Places x, which is not in the tables, evicting keys along a random walk
+     * when all of its slots are taken. The tables are resized if the walk is
+     * too long.
+     */
+    private void insert(int x) {
+        while (true) {
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                    int p = slot(x, i);
+                    if (table[p] == EMPTY) {
+                        table[p] = x;
+                        return;
+                    }
+                }
+                kickSeed ^= kickSeed << 13;
+                kickSeed ^= kickSeed >>> 17;
+                kickSeed ^= kickSeed << 5;
+                int p = slot(x, kickSeed & (HASH_FUNCTIONS - 1));
+                int evicted = table[p];
+                table[p] = x;
+                x = evicted;
+            }
+            resize();
+        }
+    }
+
+    /**
+     * Doubles the capacity, picks new hash functions and re-inserts every key
+     */
+    private void resize() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("...MAXIMUM MEMORY LIMIT REACHED...");
+        }
+        int[] old = table;
+        capacity <<= 1;
+        bits++;
+        table = new int[HASH_FUNCTIONS * capacity];
+        setCoeffs();
+        for (int x : old) {
+            if (x != EMPTY) {
+                insert(x);
+            }
+        }
+    }
+
+    /**
+     * Remove given element from the set, if it exists
+     *
+     * @param x Element to remove from set
+     * @return true if element was present, otherwise false
+     */
+    public boolean remove(int x) {
+        if (x == EMPTY) {
+            if (!containsEmpty) {
+                return false;
+            }
+            containsEmpty = false;
+            size--;
+            return true;
+        }
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int p = slot(x, i);
+            if (table[p] == x) {
+                table[p] = EMPTY;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Function to check whether set is having any element inside
+     *
+     * @return true is set is empty, otherwise false
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Function to check total number of elements inside set
+     *
+     * @return number of elements in set
+     */
+    public int size() {
+        return size;
+    }
+
+}